@@ -25,4 +25,6 @@ public interface DaemonContext {
     URL[] getTestClasspath();
 
     int getPort(String name);
+
+    Metrics getMetrics();
 }
@@ -0,0 +1,35 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon;
+
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Allows a daemon to publish metrics. The suppliers are invoked whenever the plugin collects a
+ * snapshot, which may happen on any thread.
+ */
+public interface Metrics {
+    /** Register a monotonically increasing value, e.g. the number of requests served. */
+    void counter(String name, LongSupplier value);
+
+    /** Register a value that may go up and down, e.g. the number of open connections. */
+    void gauge(String name, DoubleSupplier value);
+}
@@ -42,10 +42,31 @@ public class MessageReader<T extends Message, C extends Enum<C>> {
     }
 
     public T read(C expectedCase) throws IOException {
-        T message = parser.parseDelimitedFrom(in, extensionRegistry);
+        T message = readOptional(expectedCase);
         if (message == null) {
             throw new IOException("Unexpected end of stream");
         }
+        return message;
+    }
+
+    /**
+     * Read the next message, whatever its type.
+     *
+     * @return the message, or {@code null} if the end of the stream has been reached
+     */
+    public T readNext() throws IOException {
+        return parser.parseDelimitedFrom(in, extensionRegistry);
+    }
+
+    /**
+     * Read a message of the expected type or return {@code null} if the end of the stream has been
+     * reached.
+     */
+    public T readOptional(C expectedCase) throws IOException {
+        T message = readNext();
+        if (message == null) {
+            return null;
+        }
         C c = caseProvider.apply(message);
         if (c != expectedCase) {
             throw new IOException("Received unexpected message type " + c);
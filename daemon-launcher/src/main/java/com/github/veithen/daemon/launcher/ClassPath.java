@@ -0,0 +1,44 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.launcher;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.List;
+
+/** Classpath related utility methods, shared by the launcher and in-process daemons. */
+public final class ClassPath {
+    private ClassPath() {}
+
+    /** Convert classpath entries (file system paths) to URLs suitable for a class loader. */
+    public static URL[] toURLs(List<String> classpathEntries) {
+        return classpathEntries.stream()
+                .map(
+                        s -> {
+                            try {
+                                return Paths.get(s).toUri().toURL();
+                            } catch (MalformedURLException ex) {
+                                throw new Error(ex);
+                            }
+                        })
+                .toArray(URL[]::new);
+    }
+}
@@ -23,23 +23,42 @@ import java.net.URL;
 import java.util.Map;
 
 import com.github.veithen.daemon.DaemonContext;
+import com.github.veithen.daemon.Metrics;
 
-final class DaemonContextImpl implements DaemonContext {
+/**
+ * The {@link DaemonContext} passed to a daemon, both in a launcher JVM and for daemons running in
+ * the Maven JVM.
+ */
+public final class DaemonContextImpl implements DaemonContext {
     private final URL[] testClasspath;
     private final Map<String, Integer> ports;
+    private final Metrics metrics;
+    private volatile boolean testClasspathUsed;
 
-    public DaemonContextImpl(URL[] testClasspath, Map<String, Integer> ports) {
+    public DaemonContextImpl(URL[] testClasspath, Map<String, Integer> ports, Metrics metrics) {
         this.testClasspath = testClasspath;
         this.ports = ports;
+        this.metrics = metrics;
     }
 
     @Override
     public URL[] getTestClasspath() {
+        testClasspathUsed = true;
         return testClasspath;
     }
 
+    /** Indicates whether the daemon has accessed the test classpath. */
+    public boolean isTestClasspathUsed() {
+        return testClasspathUsed;
+    }
+
     @Override
     public int getPort(String name) {
         return ports.getOrDefault(name, 0);
     }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
 }
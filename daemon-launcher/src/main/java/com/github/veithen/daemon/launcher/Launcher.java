@@ -19,22 +19,43 @@
  */
 package com.github.veithen.daemon.launcher;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetAddress;
-import java.net.MalformedURLException;
+import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.URL;
+import java.net.SocketTimeoutException;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HexFormat;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
 
 import com.github.veithen.daemon.Daemon;
 import com.github.veithen.daemon.DaemonContext;
+import com.github.veithen.daemon.launcher.proto.AttachRequest;
+import com.github.veithen.daemon.launcher.proto.AttachResponse;
+import com.github.veithen.daemon.launcher.proto.ClassLoadingProfileOptions;
 import com.github.veithen.daemon.launcher.proto.DaemonRequest;
 import com.github.veithen.daemon.launcher.proto.DaemonRequest.RequestCase;
 import com.github.veithen.daemon.launcher.proto.DaemonResponse;
+import com.github.veithen.daemon.launcher.proto.FlightRecorderOptions;
+import com.github.veithen.daemon.launcher.proto.Heartbeat;
 import com.github.veithen.daemon.launcher.proto.InitRequest;
 import com.github.veithen.daemon.launcher.proto.InitResponse;
 import com.github.veithen.daemon.launcher.proto.MessageReader;
@@ -80,21 +101,138 @@ import com.google.protobuf.Parser;
  *       connection and terminates itself.
  *   <li>The parent process closes the control connection.
  * </ol>
+ *
+ * The parent process may spawn child processes in advance, before it knows which daemon they will
+ * run. If such a child process is no longer needed, the parent process closes the control
+ * connection before sending the {@code INIT} message and the child process terminates silently.
+ *
+ * <p>If the {@code START} message specifies a registry file, the daemon is persistent: instead of
+ * expecting a {@code STOP} message on the original control connection, the child process opens an
+ * attach port, writes it to the registry file together with a random token and keeps running when
+ * the control connection is closed. A subsequent build can then connect to the attach port and send
+ * an {@code ATTACH} message with that token, after which the connection behaves like the original
+ * control connection. If nobody attaches within the idle timeout, or if the registry file is
+ * deleted, the child process stops the daemon and terminates.
+ *
+ * <p>While the daemon is running, the parent process may send {@code METRICS} messages to get a
+ * snapshot of the metrics published by the daemon through {@link DaemonContext#getMetrics()} and of
+ * JVM data such as heap usage and garbage collection counts.
+ *
+ * <p>If the {@code START} message requests a flight recording, the child process starts it before
+ * initializing the daemon and writes it to the requested file when it receives the {@code STOP}
+ * message, before stopping the daemon.
+ *
+ * <p>If the {@code INIT} message requests a class loading profile, the child process records class
+ * loading events and execution samples until the daemon has started, and then writes the recording
+ * to the requested file, before sending the {@code START} response.
+ *
+ * <p>If the {@code INIT} message requests it, the child process also serves {@code METRICS}
+ * requests on a separate loopback port once the daemon has started. The port is reported in the
+ * {@code START} response, so that other processes can monitor the daemon.
+ *
+ * <p>If the {@code START} message specifies a heartbeat interval, the child process sends {@code
+ * HEARTBEAT} messages at that interval until it terminates, including while the daemon is being
+ * started or stopped.
+ *
+ * <p>If the {@code START} message requests log streaming, the child process sends the records
+ * logged through {@code java.util.logging} to the parent process in {@code LOG} messages, which may
+ * arrive at any time until the {@code STOPPED} message.
  */
 public final class Launcher {
+    /** The interval at which a detached persistent launcher checks its registry file. */
+    private static final long REGISTRY_CHECK_INTERVAL = 5000;
+
     private Launcher() {}
 
-    private static URL[] toURLs(List<String> classpathEntries) {
-        return classpathEntries.stream()
-                .map(
-                        s -> {
+    private static final class ControlConnection {
+        final Socket socket;
+        final MessageReader<DaemonRequest, RequestCase> reader;
+        final MessageWriter<DaemonResponse> writer;
+
+        ControlConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            reader =
+                    new MessageReader<>(
+                            socket.getInputStream(),
+                            DaemonRequest.parser(),
+                            DaemonRequest::getRequestCase);
+            writer = new MessageWriter<>(socket.getOutputStream());
+        }
+
+        /** Write a response. Writes are synchronized with the {@link LogStreamer}, if any. */
+        void write(DaemonResponse response) throws IOException {
+            synchronized (writer) {
+                writer.write(response);
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Ignore
+            }
+        }
+    }
+
+    private static long micros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Start a thread that sends {@code HEARTBEAT} messages until the control connection is closed.
+     * The thread is independent of the daemon, so that heartbeats only stop if the JVM itself is
+     * unresponsive.
+     */
+    private static void startHeartbeat(ControlConnection connection, long interval) {
+        DaemonResponse heartbeat =
+                DaemonResponse.newBuilder().setHeartbeat(Heartbeat.getDefaultInstance()).build();
+        Thread thread =
+                new Thread(
+                        () -> {
                             try {
-                                return Paths.get(s).toUri().toURL();
-                            } catch (MalformedURLException ex) {
-                                throw new Error(ex);
+                                while (true) {
+                                    Thread.sleep(interval);
+                                    connection.write(heartbeat);
+                                }
+                            } catch (InterruptedException | IOException ex) {
+                                // The connection has been closed
                             }
-                        })
-                .toArray(URL[]::new);
+                        },
+                        "heartbeat");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static Recording startRecording(FlightRecorderOptions options)
+            throws IOException, ParseException {
+        String settings = options.getSettings();
+        Configuration configuration =
+                settings.endsWith(".jfc")
+                        ? Configuration.create(Paths.get(settings))
+                        : Configuration.getConfiguration(settings);
+        Recording recording = new Recording(configuration);
+        recording.setName("daemon");
+        recording.setToDisk(true);
+        recording.start();
+        return recording;
+    }
+
+    /**
+     * Start a recording of the class loading events and of execution samples, used to profile the
+     * initialization and startup of the daemon.
+     */
+    private static Recording startProfiling(ClassLoadingProfileOptions options) {
+        Recording recording = new Recording();
+        recording.setName("class-loading-profile");
+        recording.enable("jdk.ClassLoad").withoutStackTrace().withThreshold(Duration.ZERO);
+        recording.enable("jdk.ClassDefine").withoutStackTrace();
+        recording
+                .enable("jdk.ExecutionSample")
+                .withPeriod(Duration.ofMillis(options.getSamplingInterval()));
+        recording.setToDisk(true);
+        recording.start();
+        return recording;
     }
 
     private static <T extends Message> void initDaemon(
@@ -102,21 +240,141 @@ public final class Launcher {
         daemon.init(daemon.getConfigurationType().cast(configuration), daemonContext);
     }
 
+    /**
+     * Write the registry file for a persistent launcher. The file is written atomically so that
+     * clients never see a partially written file. On POSIX file systems it is only readable by the
+     * owner, which prevents other users from reading the attach token.
+     */
+    private static void register(Path registryFile, int attachPort, String token)
+            throws IOException {
+        Properties props = new Properties();
+        props.setProperty("pid", Long.toString(ProcessHandle.current().pid()));
+        props.setProperty("port", Integer.toString(attachPort));
+        props.setProperty("token", token);
+        // Temporary files are created with owner-only permissions.
+        Path tmpFile = Files.createTempFile(registryFile.getParent(), "registry", ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmpFile)) {
+            props.store(out, null);
+        }
+        Files.move(tmpFile, registryFile, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Wait for a client to attach to a persistent launcher.
+     *
+     * @return the new control connection, or {@code null} if the idle timeout expired or the
+     *     registry file has been deleted
+     */
+    private static ControlConnection accept(
+            ServerSocket attachServerSocket, Path registryFile, long idleTimeout)
+            throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(idleTimeout);
+        attachServerSocket.setSoTimeout((int) REGISTRY_CHECK_INTERVAL);
+        while (true) {
+            try {
+                return new ControlConnection(attachServerSocket.accept());
+            } catch (SocketTimeoutException ex) {
+                if (!Files.exists(registryFile) || System.nanoTime() - deadline >= 0) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Serve {@code METRICS} requests until a {@code STOP} message is received.
+     *
+     * @return {@code true} if a {@code STOP} message has been received, {@code false} if the end of
+     *     the stream has been reached
+     */
+    private static boolean serve(ControlConnection connection, MetricsRegistry metrics)
+            throws IOException {
+        while (true) {
+            DaemonRequest request = connection.reader.readNext();
+            if (request == null) {
+                return false;
+            }
+            switch (request.getRequestCase()) {
+                case STOP:
+                    return true;
+                case METRICS:
+                    connection.write(
+                            DaemonResponse.newBuilder().setMetrics(metrics.snapshot()).build());
+                    break;
+                default:
+                    throw new IOException(
+                            "Received unexpected message type " + request.getRequestCase());
+            }
+        }
+    }
+
+    /**
+     * Serve clients of a persistent launcher until one of them sends a {@code STOP} message.
+     *
+     * @return the connection on which the {@code STOP} message was received, or {@code null} if the
+     *     launcher has been idle for too long
+     */
+    private static ControlConnection awaitStop(
+            ControlConnection connection,
+            ServerSocket attachServerSocket,
+            Path registryFile,
+            String token,
+            long idleTimeout,
+            AttachResponse attachResponse,
+            MetricsRegistry metrics)
+            throws IOException {
+        while (true) {
+            try {
+                if (serve(connection, metrics)) {
+                    return connection;
+                }
+            } catch (IOException ex) {
+                // The client went away without closing the connection properly.
+            }
+            connection.close();
+            do {
+                connection = accept(attachServerSocket, registryFile, idleTimeout);
+                if (connection == null) {
+                    return null;
+                }
+                try {
+                    AttachRequest attachRequest =
+                            connection.reader.read(RequestCase.ATTACH).getAttach();
+                    if (!MessageDigest.isEqual(
+                            attachRequest.getToken().getBytes(StandardCharsets.UTF_8),
+                            token.getBytes(StandardCharsets.UTF_8))) {
+                        throw new IOException("Invalid attach token");
+                    }
+                    connection.write(DaemonResponse.newBuilder().setAttach(attachResponse).build());
+                } catch (IOException ex) {
+                    // The client may have given up waiting for the attach response, or it didn't
+                    // provide the right token.
+                    connection.close();
+                    connection = null;
+                }
+            } while (connection == null);
+        }
+    }
+
     public static void main(String[] args) {
         try {
             int controlPort = Integer.parseInt(args[0]);
-            Socket controlSocket = new Socket(InetAddress.getLoopbackAddress(), controlPort);
-            MessageReader<DaemonRequest, RequestCase> reader =
-                    new MessageReader<>(
-                            controlSocket.getInputStream(),
-                            DaemonRequest.parser(),
-                            DaemonRequest::getRequestCase);
-            MessageWriter<DaemonResponse> writer =
-                    new MessageWriter<>(controlSocket.getOutputStream());
+            ControlConnection connection =
+                    new ControlConnection(
+                            new Socket(InetAddress.getLoopbackAddress(), controlPort));
 
-            InitRequest initRequest = reader.read(RequestCase.INIT).getInit();
+            DaemonRequest request = connection.reader.readOptional(RequestCase.INIT);
+            if (request == null) {
+                System.exit(0);
+            }
+            InitRequest initRequest = request.getInit();
+            Recording profile =
+                    initRequest.hasClassLoadingProfile()
+                            ? startProfiling(initRequest.getClassLoadingProfile())
+                            : null;
+            long lookupStart = System.nanoTime();
             URLClassLoader classLoader =
-                    new URLClassLoader(toURLs(initRequest.getClasspathEntryList()));
+                    new URLClassLoader(ClassPath.toURLs(initRequest.getClasspathEntryList()));
             Thread.currentThread().setContextClassLoader(classLoader);
             Iterator<Daemon> it = ServiceLoader.load(Daemon.class, classLoader).iterator();
             if (!it.hasNext()) {
@@ -129,34 +387,117 @@ public final class Launcher {
             Class<? extends Message> configurationType = daemon.getConfigurationType();
             Descriptor descriptor =
                     (Descriptor) configurationType.getMethod("getDescriptor").invoke(null);
-            writer.write(
-                    DaemonResponse.newBuilder()
-                            .setInit(
-                                    InitResponse.newBuilder()
-                                            .setConfigurationType(descriptor.getFullName())
-                                            .setFileDescriptor(descriptor.getFile().toProto())
-                                            .build())
-                            .build());
+            InitResponse initResponse =
+                    InitResponse.newBuilder()
+                            .setConfigurationType(descriptor.getFullName())
+                            .setFileDescriptor(descriptor.getFile().toProto())
+                            .setLookupMicros(micros(lookupStart))
+                            .build();
+            connection.write(DaemonResponse.newBuilder().setInit(initResponse).build());
 
-            StartRequest startRequest = reader.read(RequestCase.START).getStart();
+            StartRequest startRequest = connection.reader.read(RequestCase.START).getStart();
+            LogStreamer logStreamer = null;
+            if (startRequest.hasLogStreaming() && startRequest.getRegistryFile().isEmpty()) {
+                logStreamer =
+                        new LogStreamer(
+                                connection.writer,
+                                Level.parse(
+                                        Integer.toString(
+                                                startRequest.getLogStreaming().getLevel())));
+                logStreamer.install();
+            }
+            if (startRequest.getHeartbeatInterval() > 0
+                    && startRequest.getRegistryFile().isEmpty()) {
+                startHeartbeat(connection, startRequest.getHeartbeatInterval());
+            }
+            Recording recording =
+                    startRequest.hasFlightRecorder()
+                            ? startRecording(startRequest.getFlightRecorder())
+                            : null;
+            MetricsRegistry metrics = new MetricsRegistry();
+            DaemonContextImpl daemonContext =
+                    new DaemonContextImpl(
+                            ClassPath.toURLs(startRequest.getTestClasspathEntryList()),
+                            startRequest.getPortsMap(),
+                            metrics);
+            long initStart = System.nanoTime();
             initDaemon(
                     daemon,
                     ((Parser<?>) configurationType.getMethod("parser").invoke(null))
                             .parseFrom(startRequest.getConfiguration()),
-                    new DaemonContextImpl(
-                            toURLs(startRequest.getTestClasspathEntryList()),
-                            startRequest.getPortsMap()));
+                    daemonContext);
+            long initMicros = micros(initStart);
+            long startStart = System.nanoTime();
             Map<String, Integer> ports = daemon.start();
-            writer.write(
+            long startMicros = micros(startStart);
+            if (profile != null) {
+                profile.stop();
+                profile.dump(Paths.get(initRequest.getClassLoadingProfile().getDestination()));
+                profile.close();
+            }
+            int monitorPort = initRequest.getMonitor() ? Monitor.start(metrics) : 0;
+            Path registryFile = null;
+            ServerSocket attachServerSocket = null;
+            String token = null;
+            if (!startRequest.getRegistryFile().isEmpty()) {
+                registryFile = Paths.get(startRequest.getRegistryFile());
+                attachServerSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                byte[] tokenBytes = new byte[16];
+                new SecureRandom().nextBytes(tokenBytes);
+                token = HexFormat.of().formatHex(tokenBytes);
+                register(registryFile, attachServerSocket.getLocalPort(), token);
+            }
+            connection.write(
                     DaemonResponse.newBuilder()
-                            .setStart(StartResponse.newBuilder().putAllPorts(ports))
+                            .setStart(
+                                    StartResponse.newBuilder()
+                                            .putAllPorts(ports)
+                                            .setInitMicros(initMicros)
+                                            .setStartMicros(startMicros)
+                                            .setTestClasspathUsed(
+                                                    daemonContext.isTestClasspathUsed())
+                                            .setMonitorPort(monitorPort))
                             .build());
 
-            reader.read(RequestCase.STOP);
+            if (registryFile == null) {
+                if (!serve(connection, metrics)) {
+                    throw new IOException("Unexpected end of stream");
+                }
+            } else {
+                connection =
+                        awaitStop(
+                                connection,
+                                attachServerSocket,
+                                registryFile,
+                                token,
+                                startRequest.getIdleTimeout(),
+                                AttachResponse.newBuilder()
+                                        .setInit(initResponse)
+                                        .setConfiguration(startRequest.getConfiguration())
+                                        .putAllPorts(ports)
+                                        .setMonitorPort(monitorPort)
+                                        .build(),
+                                metrics);
+                Files.deleteIfExists(registryFile);
+                attachServerSocket.close();
+            }
+            if (recording != null) {
+                // Dump the recording before stopping the daemon so that it doesn't include the
+                // shutdown.
+                recording.dump(Paths.get(startRequest.getFlightRecorder().getDestination()));
+                recording.close();
+            }
             daemon.stop();
             daemon.destroy();
-            writer.write(
-                    DaemonResponse.newBuilder().setStop(StopResponse.getDefaultInstance()).build());
+            if (logStreamer != null) {
+                logStreamer.close();
+            }
+            if (connection != null) {
+                connection.write(
+                        DaemonResponse.newBuilder()
+                                .setStop(StopResponse.getDefaultInstance())
+                                .build());
+            }
             System.exit(0);
         } catch (Throwable ex) {
             ex.printStackTrace();
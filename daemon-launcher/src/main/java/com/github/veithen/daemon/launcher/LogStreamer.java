@@ -0,0 +1,169 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.launcher;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import com.github.veithen.daemon.launcher.proto.DaemonResponse;
+import com.github.veithen.daemon.launcher.proto.LogBatch;
+import com.github.veithen.daemon.launcher.proto.LogRecord;
+import com.github.veithen.daemon.launcher.proto.MessageWriter;
+
+/**
+ * A {@link java.util.logging} handler that streams log records to the client over the control
+ * connection. Records are queued by the logging threads and sent in batches by a separate thread,
+ * so that logging never blocks on the connection. If the queue is full, records are discarded and
+ * the client is told how many were lost. Libraries using SLF4J are covered if they are bound to
+ * {@code java.util.logging}, e.g. with {@code slf4j-jdk14}.
+ */
+final class LogStreamer extends Handler {
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final MessageWriter<DaemonResponse> writer;
+    private final BlockingQueue<LogRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param writer the writer for the control connection; writes are synchronized on this object
+     * @param level the minimum level of the records to stream
+     */
+    LogStreamer(MessageWriter<DaemonResponse> writer, Level level) {
+        this.writer = writer;
+        setLevel(level);
+        setFormatter(new SimpleFormatter());
+        thread = new Thread(this::run, "log-streamer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Install the handler on the root logger. Console handlers are removed, since the records no
+     * longer need to be scraped from the output of the process.
+     */
+    void install() {
+        Logger rootLogger = LogManager.getLogManager().getLogger("");
+        for (Handler handler : rootLogger.getHandlers()) {
+            if (handler instanceof java.util.logging.ConsoleHandler) {
+                rootLogger.removeHandler(handler);
+            }
+        }
+        if (rootLogger.getLevel() == null
+                || rootLogger.getLevel().intValue() > getLevel().intValue()) {
+            rootLogger.setLevel(getLevel());
+        }
+        rootLogger.addHandler(this);
+    }
+
+    @Override
+    public void publish(java.util.logging.LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        LogRecord.Builder builder =
+                LogRecord.newBuilder()
+                        .setLevel(record.getLevel().intValue())
+                        .setTimestamp(record.getMillis())
+                        .setThread(Thread.currentThread().getName())
+                        .setMessage(getFormatter().formatMessage(record));
+        if (record.getLoggerName() != null) {
+            builder.setLogger(record.getLoggerName());
+        }
+        if (record.getThrown() != null) {
+            StringWriter sw = new StringWriter();
+            try (PrintWriter pw = new PrintWriter(sw)) {
+                record.getThrown().printStackTrace(pw);
+            }
+            builder.setThrown(sw.toString());
+        }
+        if (!queue.offer(builder.build())) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void run() {
+        List<LogRecord> records = new ArrayList<>();
+        try {
+            while (true) {
+                records.add(queue.take());
+                queue.drainTo(records, MAX_BATCH_SIZE - 1);
+                send(records);
+                records.clear();
+            }
+        } catch (InterruptedException ex) {
+            // The handler has been closed.
+        } catch (IOException ex) {
+            // The client has gone away.
+            closed = true;
+        }
+    }
+
+    private void send(List<LogRecord> records) throws IOException {
+        LogBatch batch =
+                LogBatch.newBuilder()
+                        .addAllRecord(records)
+                        .setDropped(dropped.getAndSet(0))
+                        .build();
+        synchronized (writer) {
+            writer.write(DaemonResponse.newBuilder().setLog(batch).build());
+        }
+    }
+
+    @Override
+    public void flush() {}
+
+    /** Send the remaining records and stop streaming. */
+    @Override
+    public void close() {
+        LogManager.getLogManager().getLogger("").removeHandler(this);
+        thread.interrupt();
+        try {
+            thread.join();
+            if (!closed) {
+                closed = true;
+                List<LogRecord> records = new ArrayList<>();
+                queue.drainTo(records);
+                if (!records.isEmpty() || dropped.get() > 0) {
+                    send(records);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            // The client has gone away.
+        }
+    }
+}
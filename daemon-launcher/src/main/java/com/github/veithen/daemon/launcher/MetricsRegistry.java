@@ -0,0 +1,165 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.launcher;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.github.veithen.daemon.Metrics;
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+import com.sun.management.HotSpotDiagnosticMXBean;
+import com.sun.management.OperatingSystemMXBean;
+
+/**
+ * Collects the metrics published by a daemon, together with data about the JVM it runs in, into a
+ * {@link MetricsResponse}.
+ */
+public final class MetricsRegistry implements Metrics {
+    private final Map<String, LongSupplier> counters = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    @Override
+    public void counter(String name, LongSupplier value) {
+        counters.put(name, value);
+    }
+
+    @Override
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public MetricsResponse snapshot() {
+        MetricsResponse.Builder builder = MetricsResponse.newBuilder();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        builder.putGauges("jvm.heap.used", heap.getUsed());
+        builder.putGauges("jvm.heap.committed", heap.getCommitted());
+        builder.putGauges("jvm.heap.max", heap.getMax());
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String prefix = "jvm.gc." + gc.getName().replace(' ', '_');
+            builder.putCounters(prefix + ".count", gc.getCollectionCount());
+            builder.putCounters(prefix + ".millis", gc.getCollectionTime());
+        }
+        long metaspace = 0;
+        long codeCache = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.NON_HEAP) {
+                continue;
+            }
+            // The code cache is either a single pool or segmented into several CodeHeap pools.
+            String name = pool.getName();
+            if (name.equals("Metaspace")) {
+                metaspace += pool.getUsage().getUsed();
+            } else if (name.equals("Code Cache") || name.startsWith("CodeHeap ")) {
+                codeCache += pool.getUsage().getUsed();
+            }
+        }
+        builder.putGauges("jvm.metaspace.used", metaspace);
+        builder.putGauges("jvm.codecache.used", codeCache);
+        long rss = getResidentSetSize();
+        if (rss != -1) {
+            builder.putGauges("jvm.rss", rss);
+        }
+        String nativeMemorySummary = getNativeMemorySummary();
+        if (nativeMemorySummary != null) {
+            builder.setNativeMemorySummary(nativeMemorySummary);
+        }
+        OperatingSystemMXBean os = ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+        if (os != null) {
+            builder.putCounters("jvm.cpu.nanos", os.getProcessCpuTime());
+        }
+        builder.putGauges("jvm.processors", Runtime.getRuntime().availableProcessors());
+        builder.putGauges("jvm.threads", ManagementFactory.getThreadMXBean().getThreadCount());
+        builder.putGauges(
+                "jvm.classes.loaded",
+                ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+        // A failing supplier shouldn't prevent the other metrics from being reported.
+        counters.forEach(
+                (name, value) -> {
+                    try {
+                        builder.putCounters(name, value.getAsLong());
+                    } catch (RuntimeException ex) {
+                        // Skip the metric
+                    }
+                });
+        gauges.forEach(
+                (name, value) -> {
+                    try {
+                        builder.putGauges(name, value.getAsDouble());
+                    } catch (RuntimeException ex) {
+                        // Skip the metric
+                    }
+                });
+        return builder.build();
+    }
+
+    /** Get the resident set size of the process, or -1 if it can't be determined. */
+    private static long getResidentSetSize() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status)) {
+                // The value is in kB, e.g. "VmRSS:	  123456 kB".
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring(6).trim().split("\\s+")[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            // Fall through
+        }
+        return -1;
+    }
+
+    /** Get the Native Memory Tracking summary, or {@code null} if NMT isn't enabled. */
+    private static String getNativeMemorySummary() {
+        HotSpotDiagnosticMXBean hotspot =
+                ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        try {
+            if (hotspot == null
+                    || hotspot.getVMOption("NativeMemoryTracking").getValue().equals("off")) {
+                return null;
+            }
+            return (String)
+                    ManagementFactory.getPlatformMBeanServer()
+                            .invoke(
+                                    new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                                    "vmNativeMemory",
+                                    new Object[] {new String[] {"summary"}},
+                                    new String[] {String[].class.getName()});
+        } catch (JMException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
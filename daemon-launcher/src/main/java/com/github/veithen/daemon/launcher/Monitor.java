@@ -0,0 +1,110 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.launcher;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Semaphore;
+
+import com.github.veithen.daemon.launcher.proto.DaemonRequest;
+import com.github.veithen.daemon.launcher.proto.DaemonRequest.RequestCase;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse;
+import com.github.veithen.daemon.launcher.proto.MessageReader;
+import com.github.veithen.daemon.launcher.proto.MessageWriter;
+
+/**
+ * Serves {@code METRICS} requests on a separate loopback port, so that processes other than the one
+ * holding the control connection (e.g. the {@code status} goal run from another terminal) can
+ * monitor the daemon. Any other request closes the connection.
+ */
+final class Monitor {
+    /**
+     * The maximum number of connections served concurrently. Further connections wait in the
+     * backlog of the server socket.
+     */
+    private static final int MAX_CONNECTIONS = 4;
+
+    private final ServerSocket serverSocket;
+    private final MetricsRegistry metrics;
+    private final Semaphore connections = new Semaphore(MAX_CONNECTIONS);
+
+    private Monitor(ServerSocket serverSocket, MetricsRegistry metrics) {
+        this.serverSocket = serverSocket;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start the monitor in background threads.
+     *
+     * @return the port the monitor listens on
+     */
+    static int start(MetricsRegistry metrics) throws IOException {
+        Monitor monitor =
+                new Monitor(new ServerSocket(0, 10, InetAddress.getLoopbackAddress()), metrics);
+        Thread thread = new Thread(monitor::accept, "monitor");
+        thread.setDaemon(true);
+        thread.start();
+        return monitor.serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (true) {
+            connections.acquireUninterruptibly();
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException ex) {
+                return;
+            }
+            Thread thread =
+                    new Thread(
+                            () -> {
+                                try {
+                                    serve(socket);
+                                } finally {
+                                    connections.release();
+                                }
+                            },
+                            "monitor-" + socket.getPort());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            MessageReader<DaemonRequest, RequestCase> reader =
+                    new MessageReader<>(
+                            socket.getInputStream(),
+                            DaemonRequest.parser(),
+                            DaemonRequest::getRequestCase);
+            MessageWriter<DaemonResponse> writer = new MessageWriter<>(socket.getOutputStream());
+            DaemonRequest request;
+            while ((request = reader.readNext()) != null
+                    && request.getRequestCase() == RequestCase.METRICS) {
+                writer.write(DaemonResponse.newBuilder().setMetrics(metrics.snapshot()).build());
+            }
+        } catch (IOException ex) {
+            // The client went away
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.launcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.veithen.daemon.launcher.proto.DaemonResponse;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse.ResponseCase;
+import com.github.veithen.daemon.launcher.proto.LogBatch;
+import com.github.veithen.daemon.launcher.proto.LogRecord;
+import com.github.veithen.daemon.launcher.proto.MessageReader;
+import com.github.veithen.daemon.launcher.proto.MessageWriter;
+
+public class LogStreamerTest {
+    private static List<LogBatch> readBatches(ByteArrayOutputStream out) throws IOException {
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        MessageReader<DaemonResponse, ResponseCase> reader =
+                new MessageReader<>(in, DaemonResponse.parser(), DaemonResponse::getResponseCase);
+        List<LogBatch> batches = new ArrayList<>();
+        DaemonResponse response;
+        while ((response = reader.readOptional(ResponseCase.LOG)) != null) {
+            batches.add(response.getLog());
+        }
+        return batches;
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogStreamer streamer = new LogStreamer(new MessageWriter<>(out), Level.INFO);
+        java.util.logging.LogRecord debug = new java.util.logging.LogRecord(Level.FINE, "Details");
+        streamer.publish(debug);
+        java.util.logging.LogRecord info =
+                new java.util.logging.LogRecord(Level.INFO, "Listening on port {0}");
+        info.setLoggerName("org.example.Server");
+        info.setParameters(new Object[] {"8080"});
+        streamer.publish(info);
+        java.util.logging.LogRecord warning =
+                new java.util.logging.LogRecord(Level.WARNING, "Request failed");
+        warning.setThrown(new IOException("Broken pipe"));
+        streamer.publish(warning);
+        streamer.close();
+        // Records published after close are ignored.
+        streamer.publish(new java.util.logging.LogRecord(Level.SEVERE, "Too late"));
+
+        List<LogRecord> records = new ArrayList<>();
+        for (LogBatch batch : readBatches(out)) {
+            assertThat(batch.getDropped()).isZero();
+            records.addAll(batch.getRecordList());
+        }
+        assertThat(records).hasSize(2);
+        LogRecord record = records.get(0);
+        assertThat(record.getLevel()).isEqualTo(Level.INFO.intValue());
+        assertThat(record.getLogger()).isEqualTo("org.example.Server");
+        assertThat(record.getThread()).isEqualTo(Thread.currentThread().getName());
+        assertThat(record.getMessage()).isEqualTo("Listening on port 8080");
+        assertThat(record.getThrown()).isEmpty();
+        record = records.get(1);
+        assertThat(record.getLevel()).isEqualTo(Level.WARNING.intValue());
+        assertThat(record.getLogger()).isEmpty();
+        assertThat(record.getMessage()).isEqualTo("Request failed");
+        assertThat(record.getThrown()).startsWith("java.io.IOException: Broken pipe");
+    }
+
+    /** Tests that records are dropped instead of blocking the logging thread. */
+    @Test
+    public void testDropped() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> unblocked = new CompletableFuture<>();
+        // Simulates a client that doesn't read from the connection.
+        FilterOutputStream blockingOut =
+                new FilterOutputStream(out) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        // Like a socket write, this isn't interruptible.
+                        unblocked.join();
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[] {(byte) b}, 0, 1);
+                    }
+                };
+        LogStreamer streamer = new LogStreamer(new MessageWriter<>(blockingOut), Level.INFO);
+        int count = 20000;
+        for (int i = 0; i < count; i++) {
+            streamer.publish(new java.util.logging.LogRecord(Level.INFO, "Message " + i));
+        }
+        unblocked.complete(null);
+        streamer.close();
+
+        int received = 0;
+        int dropped = 0;
+        for (LogBatch batch : readBatches(out)) {
+            received += batch.getRecordCount();
+            dropped += batch.getDropped();
+        }
+        assertThat(dropped).isPositive();
+        assertThat(received + dropped).isEqualTo(count);
+    }
+}
@@ -0,0 +1,83 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.launcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.veithen.daemon.launcher.proto.DaemonRequest;
+import com.github.veithen.daemon.launcher.proto.DaemonRequest.RequestCase;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse.ResponseCase;
+import com.github.veithen.daemon.launcher.proto.MessageReader;
+import com.github.veithen.daemon.launcher.proto.MessageWriter;
+import com.github.veithen.daemon.launcher.proto.MetricsRequest;
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+import com.github.veithen.daemon.launcher.proto.StopRequest;
+
+public class MonitorTest {
+    /** Tests that the metrics published by the daemon and the JVM metrics are sent back. */
+    @Test
+    public void testMetricsRoundTrip() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        AtomicLong requests = new AtomicLong(42);
+        metrics.counter("requests", requests::get);
+        metrics.gauge("load", () -> 0.5);
+        metrics.gauge(
+                "broken",
+                () -> {
+                    throw new IllegalStateException();
+                });
+        int port = Monitor.start(metrics);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            MessageWriter<DaemonRequest> writer = new MessageWriter<>(socket.getOutputStream());
+            MessageReader<DaemonResponse, ResponseCase> reader =
+                    new MessageReader<>(
+                            socket.getInputStream(),
+                            DaemonResponse.parser(),
+                            DaemonResponse::getResponseCase);
+            DaemonRequest request =
+                    DaemonRequest.newBuilder()
+                            .setMetrics(MetricsRequest.getDefaultInstance())
+                            .build();
+            writer.write(request);
+            MetricsResponse response = reader.read(ResponseCase.METRICS).getMetrics();
+            assertThat(response.getCountersMap()).containsEntry("requests", 42L);
+            assertThat(response.getGaugesMap())
+                    .containsEntry("load", 0.5)
+                    .containsKeys("jvm.heap.used", "jvm.threads")
+                    .doesNotContainKey("broken");
+            // The connection serves any number of requests, with fresh values each time.
+            requests.incrementAndGet();
+            writer.write(request);
+            assertThat(reader.read(ResponseCase.METRICS).getMetrics().getCountersMap())
+                    .containsEntry("requests", 43L);
+            // Other requests aren't allowed on the monitor port.
+            writer.write(
+                    DaemonRequest.newBuilder().setStop(StopRequest.getDefaultInstance()).build());
+            assertThat(reader.readNext()).isNull();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+
+/**
+ * Base class for goals that display the daemons registered by {@link StartMojo}. These goals are
+ * meant to be run from another terminal while the build that started the daemons is running.
+ */
+public abstract class AbstractStatusMojo extends AbstractMojo {
+    private static final String FORMAT = "%-8s %-20s %-20s %-16s %9s %6s %10s %21s %7s";
+
+    /** The directory where the daemons are registered; see {@link StartMojo}. */
+    @Parameter(
+            property = "daemon.statusDirectory",
+            defaultValue = "${project.build.directory}/daemon-status",
+            required = true)
+    private File statusDirectory;
+
+    /** The CPU time and wall clock time of the previous sample, indexed by PID. */
+    private final Map<Long, long[]> previousSamples = new HashMap<>();
+
+    /**
+     * Print a table with the status of the running daemons.
+     *
+     * @return the number of daemons
+     */
+    protected final int printStatus() throws MojoExecutionException {
+        List<StatusRegistry.Entry> entries;
+        try {
+            entries = new StatusRegistry(statusDirectory).list();
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Failed to read " + statusDirectory, ex);
+        }
+        if (entries.isEmpty()) {
+            getLog().info("No daemons are running");
+            return 0;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(
+                String.format(
+                        Locale.ROOT,
+                        FORMAT,
+                        "PID",
+                        "DAEMON",
+                        "PROJECT",
+                        "PORTS",
+                        "UPTIME",
+                        "CPU%",
+                        "RSS",
+                        "HEAP",
+                        "THREADS"));
+        for (StatusRegistry.Entry entry : entries) {
+            String ports =
+                    entry.getPorts().entrySet().stream()
+                            .map(e -> e.getKey() + "=" + e.getValue())
+                            .collect(Collectors.joining(","));
+            Duration uptime = Duration.between(entry.getStartTime(), Instant.now());
+            String cpu = "-";
+            String rss = "-";
+            String heap = "-";
+            String threads = "-";
+            try {
+                MetricsResponse metrics = entry.getMetrics();
+                Map<String, Double> gauges = metrics.getGaugesMap();
+                cpu = cpu(entry, metrics);
+                Double rssBytes = gauges.get("jvm.rss");
+                if (rssBytes != null) {
+                    rss = mb(rssBytes);
+                }
+                heap =
+                        mb(gauges.getOrDefault("jvm.heap.used", 0d))
+                                + "/"
+                                + mb(gauges.getOrDefault("jvm.heap.committed", 0d));
+                threads = String.valueOf(gauges.getOrDefault("jvm.threads", 0d).intValue());
+            } catch (IOException ex) {
+                getLog().debug("Failed to get metrics from daemon " + entry.getPid(), ex);
+            }
+            lines.add(
+                    String.format(
+                            Locale.ROOT,
+                            FORMAT,
+                            entry.getPid(),
+                            entry.getName(),
+                            entry.getProject(),
+                            ports,
+                            String.format(
+                                    Locale.ROOT,
+                                    "%d:%02d:%02d",
+                                    uptime.toHours(),
+                                    uptime.toMinutesPart(),
+                                    uptime.toSecondsPart()),
+                            cpu,
+                            rss,
+                            heap,
+                            threads));
+        }
+        for (String line : lines) {
+            getLog().info(line);
+        }
+        return entries.size();
+    }
+
+    /**
+     * Compute the CPU usage of a daemon as a percentage of one processor. For the first sample this
+     * is the average since the daemon has been started; after that it is the usage since the
+     * previous sample.
+     */
+    private String cpu(StatusRegistry.Entry entry, MetricsResponse metrics) {
+        Long cpuNanos = metrics.getCountersMap().get("jvm.cpu.nanos");
+        if (cpuNanos == null || cpuNanos < 0) {
+            return "-";
+        }
+        long now = System.nanoTime();
+        long[] previous = previousSamples.put(entry.getPid(), new long[] {cpuNanos, now});
+        long elapsed;
+        long used;
+        if (previous == null) {
+            elapsed = Duration.between(entry.getStartTime(), Instant.now()).toNanos();
+            used = cpuNanos;
+        } else {
+            elapsed = now - previous[1];
+            used = cpuNanos - previous[0];
+        }
+        if (elapsed <= 0) {
+            return "-";
+        }
+        return String.format(Locale.ROOT, "%.1f", 100.0 * used / elapsed);
+    }
+
+    private static String mb(double bytes) {
+        return String.format(Locale.ROOT, "%.1fM", bytes / 1048576.0);
+    }
+}
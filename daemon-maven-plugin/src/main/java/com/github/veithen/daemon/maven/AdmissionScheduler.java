@@ -0,0 +1,264 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Limits the number of daemon JVMs running concurrently so that their combined heap budget and
+ * processor count don't exceed the capacity of the host. Launches that would oversubscribe the host
+ * are queued in FIFO order until enough capacity is released.
+ *
+ * <p>Capacity is reserved on behalf of an owner (the project that uses the daemon). An owner that
+ * already holds capacity is never queued: all daemons of a project need to run at the same time,
+ * and waiting for capacity held by another owner that is itself waiting would deadlock.
+ */
+final class AdmissionScheduler {
+    /** The capacity reserved for a daemon. */
+    final class Admission {
+        private final long memory;
+        private final int processors;
+        private Object owner;
+        private boolean released;
+
+        Admission(Object owner, long memory, int processors) {
+            this.owner = owner;
+            this.memory = memory;
+            this.processors = processors;
+        }
+
+        /** Account the capacity to a different owner, e.g. when a daemon is reused. */
+        void transfer(Object newOwner) {
+            synchronized (AdmissionScheduler.this) {
+                if (!released && owner != newOwner) {
+                    removeHolding(owner);
+                    owner = newOwner;
+                    holdings.merge(owner, 1, Integer::sum);
+                    AdmissionScheduler.this.notifyAll();
+                }
+            }
+        }
+
+        void release() {
+            synchronized (AdmissionScheduler.this) {
+                if (!released) {
+                    released = true;
+                    usedMemory -= memory;
+                    usedProcessors -= processors;
+                    removeHolding(owner);
+                    AdmissionScheduler.this.notifyAll();
+                }
+            }
+        }
+    }
+
+    private final Logger logger;
+    private final long memoryCapacity;
+    private final int processorCapacity;
+    private final long defaultHeapSize;
+    private final Deque<Object> queue = new ArrayDeque<>();
+    private final Map<Object, Integer> holdings = new HashMap<>();
+    private long usedMemory;
+    private int usedProcessors;
+
+    AdmissionScheduler(
+            Logger logger, long memoryCapacity, int processorCapacity, long defaultHeapSize) {
+        this.logger = logger;
+        this.memoryCapacity = memoryCapacity;
+        this.processorCapacity = processorCapacity;
+        this.defaultHeapSize = defaultHeapSize;
+    }
+
+    /**
+     * Create a scheduler for the current host. The memory capacity is the physical memory minus the
+     * maximum heap size of the Maven JVM. Daemons that don't specify a maximum heap size are
+     * assumed to use the JVM default, i.e. a quarter of the physical memory.
+     */
+    static AdmissionScheduler create(Logger logger) {
+        long physicalMemory =
+                ((com.sun.management.OperatingSystemMXBean)
+                                ManagementFactory.getOperatingSystemMXBean())
+                        .getTotalMemorySize();
+        return new AdmissionScheduler(
+                logger,
+                Math.max(physicalMemory - Runtime.getRuntime().maxMemory(), 0),
+                Runtime.getRuntime().availableProcessors(),
+                physicalMemory / 4);
+    }
+
+    /**
+     * Wait until the host has enough capacity for a daemon started with the given JVM arguments.
+     *
+     * @param owner the owner of the capacity
+     * @param name the name of the daemon, used in log messages
+     * @param vmArgs the JVM arguments of the daemon
+     * @param onQueued invoked (without holding any lock) if the daemon has to wait
+     */
+    Admission admit(Object owner, String name, String[] vmArgs, Runnable onQueued)
+            throws InterruptedException {
+        return admit(owner, name, getMemory(vmArgs), getProcessorCount(vmArgs), onQueued);
+    }
+
+    /**
+     * Reserve capacity for a JVM started with the given JVM arguments, but only if it is available
+     * immediately and no other daemon is queued. This is used for JVMs that are spawned ahead of
+     * time and that don't need to run.
+     *
+     * @return the reserved capacity, or {@code null} if it isn't available
+     */
+    synchronized Admission tryAdmit(Object owner, String[] vmArgs) {
+        long memory = getMemory(vmArgs);
+        int processors = getProcessorCount(vmArgs);
+        if (!queue.isEmpty()
+                || usedMemory + memory > memoryCapacity
+                || usedProcessors + processors > processorCapacity) {
+            return null;
+        }
+        usedMemory += memory;
+        usedProcessors += processors;
+        holdings.merge(owner, 1, Integer::sum);
+        return new Admission(owner, memory, processors);
+    }
+
+    private long getMemory(String[] vmArgs) {
+        long heapSize = getMaxHeapSize(vmArgs);
+        return heapSize == -1 ? defaultHeapSize : heapSize;
+    }
+
+    Admission admit(Object owner, String name, long memory, int processors, Runnable onQueued)
+            throws InterruptedException {
+        Object ticket = new Object();
+        long start = System.nanoTime();
+        boolean queued;
+        synchronized (this) {
+            queue.add(ticket);
+            queued = !canAdmit(ticket, owner, memory, processors);
+            if (queued) {
+                logger.info(
+                        String.format(
+                                Locale.ROOT,
+                                "Daemon %s (heap %d MB, %d processors) is queued; %d MB and %d"
+                                        + " processors are in use",
+                                name,
+                                memory >> 20,
+                                processors,
+                                usedMemory >> 20,
+                                usedProcessors));
+            }
+        }
+        if (queued && onQueued != null) {
+            try {
+                onQueued.run();
+            } catch (RuntimeException | Error ex) {
+                synchronized (this) {
+                    queue.remove(ticket);
+                    notifyAll();
+                }
+                throw ex;
+            }
+        }
+        synchronized (this) {
+            try {
+                while (!canAdmit(ticket, owner, memory, processors)) {
+                    wait();
+                }
+            } finally {
+                queue.remove(ticket);
+                notifyAll();
+            }
+            usedMemory += memory;
+            usedProcessors += processors;
+            holdings.merge(owner, 1, Integer::sum);
+        }
+        if (queued) {
+            logger.info(
+                    String.format(
+                            Locale.ROOT,
+                            "Daemon %s admitted after waiting %.1f s",
+                            name,
+                            (System.nanoTime() - start) / 1e9));
+        }
+        return new Admission(owner, memory, processors);
+    }
+
+    private boolean canAdmit(Object ticket, Object owner, long memory, int processors) {
+        if (holdings.containsKey(owner) || holdings.isEmpty()) {
+            return true;
+        }
+        return queue.peek() == ticket
+                && usedMemory + memory <= memoryCapacity
+                && usedProcessors + processors <= processorCapacity;
+    }
+
+    private void removeHolding(Object owner) {
+        holdings.computeIfPresent(owner, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Determine the maximum heap size configured by the given JVM arguments. If several arguments
+     * set the heap size, the last one wins, as with the JVM itself.
+     *
+     * @return the heap size in bytes, or -1 if the arguments don't set the maximum heap size
+     */
+    static long getMaxHeapSize(String[] vmArgs) {
+        long result = -1;
+        for (String arg : vmArgs) {
+            String value;
+            if (arg.startsWith("-Xmx")) {
+                value = arg.substring(4);
+            } else if (arg.startsWith("-XX:MaxHeapSize=")) {
+                value = arg.substring(16);
+            } else {
+                continue;
+            }
+            long size = MemorySize.parse(value);
+            if (size != -1) {
+                result = size;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determine the number of processors a daemon started with the given JVM arguments will use.
+     *
+     * @return the value of {@code -XX:ActiveProcessorCount} if present, 1 otherwise
+     */
+    static int getProcessorCount(String[] vmArgs) {
+        int result = 1;
+        for (String arg : vmArgs) {
+            if (arg.startsWith("-XX:ActiveProcessorCount=")) {
+                try {
+                    result = Math.max(Integer.parseInt(arg.substring(25)), 1);
+                } catch (NumberFormatException ex) {
+                    // The JVM will refuse to start anyway.
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Wait for daemons started by {@link StartMojo} in asynchronous mode to become ready and write
+ * their timing report. This goal does nothing if the daemons were started synchronously.
+ */
+@Mojo(name = "await", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, threadSafe = true)
+public class AwaitMojo extends AbstractDaemonControlMojo {
+    /** The current build session instance. */
+    @Parameter(property = "session", required = true, readonly = true)
+    private MavenSession session;
+
+    @Override
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        try {
+            getDaemonManager().awaitAll(session);
+        } catch (Throwable ex) {
+            throw new MojoFailureException("Failed to start server", ex);
+        } finally {
+            for (TimingReport report : TimingReport.unregisterAll(session.getCurrentProject())) {
+                report.write(getLog());
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * A class data sharing archive for a given JVM, set of JVM arguments and classpath. On Java 25 and
+ * later, an AOT cache is used instead. The archive is created by the first launcher that runs with
+ * a given classpath and used by all subsequent launchers.
+ */
+final class ClassDataArchive {
+    /**
+     * Prefixes of the JVM arguments that affect whether an archive can be used or which classes it
+     * contains: boolean flags (garbage collector, compressed pointers, etc.), agents, module system
+     * options and class loader overrides. Other arguments, such as heap sizes or system properties,
+     * are not part of the key so that they don't multiply the number of archives.
+     */
+    private static final List<String> RELEVANT_VM_ARG_PREFIXES =
+            List.of(
+                    "-XX:+",
+                    "-XX:-",
+                    "-javaagent:",
+                    "-agentlib:",
+                    "-agentpath:",
+                    "-Xbootclasspath/a:",
+                    "-Djava.system.class.loader=",
+                    "--add-opens",
+                    "--add-exports",
+                    "--add-reads",
+                    "--add-modules",
+                    "--limit-modules",
+                    "--patch-module",
+                    "--module-path",
+                    "--upgrade-module-path",
+                    "--enable-native-access");
+
+    private final Path file;
+    private final boolean aotCache;
+
+    private ClassDataArchive(Path file, boolean aotCache) {
+        this.file = file;
+        this.aotCache = aotCache;
+    }
+
+    /**
+     * Create an archive for the given JVM, JVM arguments and classpath.
+     *
+     * @return the archive, or {@code null} if the JVM doesn't support dynamic archives
+     */
+    static ClassDataArchive create(
+            String jvm,
+            File directory,
+            String[] vmArgs,
+            List<File> launcherClasspath,
+            List<File> daemonClasspath)
+            throws IOException {
+        String javaVersion = getJavaVersion(jvm);
+        int featureVersion = getFeatureVersion(javaVersion);
+        // Dynamic archives were introduced in Java 13.
+        if (featureVersion < 13) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new Error(ex);
+        }
+        update(digest, jvm);
+        update(digest, javaVersion);
+        for (String arg : getRelevantVmArgs(vmArgs)) {
+            update(digest, arg);
+        }
+        // Separates the JVM arguments from the classpath.
+        digest.update((byte) 0);
+        for (List<File> classpath : Arrays.asList(launcherClasspath, daemonClasspath)) {
+            for (File file : classpath) {
+                update(digest, file.getPath());
+                update(digest, Long.toString(file.length()));
+                update(digest, Long.toString(file.lastModified()));
+            }
+        }
+        boolean aotCache = featureVersion >= 25;
+        return new ClassDataArchive(
+                directory
+                        .toPath()
+                        .resolve(
+                                HexFormat.of().formatHex(digest.digest())
+                                        + (aotCache ? ".aot" : ".jsa")),
+                aotCache);
+    }
+
+    /**
+     * Select the JVM arguments that need to be part of the archive key. Options that take their
+     * value as a separate argument (e.g. {@code --add-opens java.base/java.lang=ALL-UNNAMED}) are
+     * returned together with that value.
+     */
+    static List<String> getRelevantVmArgs(String[] vmArgs) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < vmArgs.length; i++) {
+            String arg = vmArgs[i];
+            for (String prefix : RELEVANT_VM_ARG_PREFIXES) {
+                if (arg.startsWith(prefix)) {
+                    result.add(arg);
+                    if (arg.equals(prefix) && prefix.startsWith("--") && i + 1 < vmArgs.length) {
+                        result.add(vmArgs[++i]);
+                    }
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static String getJavaVersion(String jvm) throws IOException {
+        // The java executable is located in the bin directory of the Java home.
+        Path releaseFile = Paths.get(jvm).toAbsolutePath().getParent().resolveSibling("release");
+        if (!Files.exists(releaseFile)) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(releaseFile)) {
+            props.load(in);
+        }
+        String version = props.getProperty("JAVA_VERSION");
+        return version == null ? null : version.replace("\"", "");
+    }
+
+    private static int getFeatureVersion(String javaVersion) {
+        if (javaVersion == null) {
+            return -1;
+        }
+        String[] parts = javaVersion.split("[._+-]");
+        try {
+            int version = Integer.parseInt(parts[0]);
+            return version == 1 && parts.length > 1 ? Integer.parseInt(parts[1]) : version;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the JVM arguments for a new launcher. If the archive doesn't exist yet, the arguments
+     * instruct the JVM to create it on exit, using the given output file. The caller must then
+     * invoke {@link #install(Path)} after the JVM has terminated.
+     *
+     * @param output a unique temporary file to write the archive to
+     * @return the JVM arguments
+     */
+    List<String> getVmArgs(Path output) {
+        if (Files.exists(file)) {
+            return Collections.singletonList(
+                    (aotCache ? "-XX:AOTCache=" : "-XX:SharedArchiveFile=") + file);
+        } else {
+            return Collections.singletonList(
+                    (aotCache ? "-XX:AOTCacheOutput=" : "-XX:ArchiveClassesAtExit=") + output);
+        }
+    }
+
+    boolean exists() {
+        return Files.exists(file);
+    }
+
+    /**
+     * Create a unique temporary file name for a new archive. Multiple launchers may attempt to
+     * create the same archive concurrently, so each one writes to its own file.
+     */
+    Path newOutputFile() throws IOException {
+        Files.createDirectories(file.getParent());
+        return file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    /**
+     * Move an archive written by a launcher JVM into place. If several launchers created the same
+     * archive concurrently, the first one wins: an existing archive is never replaced, since other
+     * launchers may already be using it.
+     */
+    void install(Path output) throws IOException {
+        if (!Files.exists(output)) {
+            // The JVM didn't terminate normally or failed to create the archive.
+            return;
+        }
+        try {
+            // Unlike a rename, which silently replaces the target, this fails if the archive
+            // already exists.
+            Files.createLink(file, output);
+        } catch (FileAlreadyExistsException ex) {
+            // Another launcher was faster.
+        } catch (UnsupportedOperationException ex) {
+            // The file system doesn't support hard links. Replacing an existing archive is
+            // acceptable in that case because archives for the same key are equivalent.
+            Files.move(output, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ClassDataArchive && file.equals(((ClassDataArchive) obj).file);
+    }
+
+    @Override
+    public int hashCode() {
+        return file.hashCode();
+    }
+}
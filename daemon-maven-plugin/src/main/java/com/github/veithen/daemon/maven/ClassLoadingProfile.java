@@ -0,0 +1,406 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.logging.Logger;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedClassLoader;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Describes a class loading profile of a daemon. The launcher records class loading events and
+ * execution samples from the initialization of the daemon until it has started; the plugin then
+ * ranks the class loaders, jars and classes by the time spent loading and initializing classes.
+ *
+ * <p>The time spent loading a class is measured exactly, excluding the time spent loading other
+ * classes in the meantime (such as the superclass). The JVM doesn't report the time spent in static
+ * initializers; it is estimated from the execution samples that have a static initializer on the
+ * stack, each sample accounting for one sampling interval.
+ */
+final class ClassLoadingProfile {
+    /** The interval at which the launcher samples the threads of the daemon. */
+    static final Duration SAMPLING_INTERVAL = Duration.ofMillis(1);
+
+    /** The number of entries included in the summary logged after the daemon has started. */
+    private static final int SUMMARY_ENTRIES = 5;
+
+    /** The number of classes listed in the report. */
+    private static final int REPORT_CLASSES = 50;
+
+    private static final class Stats {
+        int classes;
+        long loadNanos;
+        int samples;
+
+        Stats add(Stats other) {
+            classes += other.classes;
+            loadNanos += other.loadNanos;
+            samples += other.samples;
+            return this;
+        }
+
+        long getTotalNanos(Duration samplingInterval) {
+            return loadNanos + samples * samplingInterval.toNanos();
+        }
+    }
+
+    private static final class ClassKey {
+        final String name;
+        final String loader;
+
+        ClassKey(String name, String loader) {
+            this.name = name;
+            this.loader = loader;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ClassKey)) {
+                return false;
+            }
+            ClassKey other = (ClassKey) obj;
+            return name.equals(other.name) && loader.equals(other.loader);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + loader.hashCode();
+        }
+    }
+
+    /** A class loading event for which the nested loads have not been subtracted yet. */
+    private static final class Load {
+        final ClassKey key;
+        final long start;
+        final long end;
+        long selfNanos;
+
+        Load(ClassKey key, long start, long end) {
+            this.key = key;
+            this.start = start;
+            this.end = end;
+            selfNanos = end - start;
+        }
+    }
+
+    private final File recording;
+    private final File report;
+
+    /**
+     * Constructor.
+     *
+     * @param recording the file the launcher writes the recording to
+     * @param report the file to write the report to
+     */
+    ClassLoadingProfile(File recording, File report) {
+        this.recording = recording;
+        this.report = report;
+    }
+
+    File getRecording() {
+        return recording;
+    }
+
+    /** Analyze the recording, write the report and log a summary. */
+    void report(Logger logger, String daemon, List<File> classpath) {
+        List<String> lines;
+        try {
+            lines = analyze(recording.toPath(), classpath, SAMPLING_INTERVAL);
+            Files.write(report.toPath(), lines, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            logger.warn("Failed to analyze class loading profile " + recording, ex);
+            return;
+        }
+        logger.info("Class loading profile of daemon " + daemon + " written to " + report);
+        // The first lines are the totals and the top entries of the per-jar ranking.
+        for (String line : lines.subList(0, Math.min(lines.size(), 2))) {
+            logger.info("  " + line);
+        }
+    }
+
+    /**
+     * Analyze a recording and produce a report with the class loaders, jars and classes ranked by
+     * the time spent loading and initializing classes.
+     *
+     * @param file the recording
+     * @param classpath the classpath entries used to attribute classes to jars; classes that don't
+     *     belong to any of these entries are attributed to their class loader
+     * @param samplingInterval the interval at which execution samples have been taken
+     * @return the lines of the report
+     */
+    static List<String> analyze(Path file, List<File> classpath, Duration samplingInterval)
+            throws IOException {
+        Map<Long, List<Load>> loadsByThread = new HashMap<>();
+        Set<ClassKey> classes = new HashSet<>();
+        Map<ClassKey, Integer> samples = new HashMap<>();
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                switch (event.getEventType().getName()) {
+                    case "jdk.ClassLoad":
+                        ClassKey loaded = key(event.getClass("loadedClass"));
+                        RecordedThread thread = event.getThread();
+                        if (loaded != null && thread != null) {
+                            classes.add(loaded);
+                            loadsByThread
+                                    .computeIfAbsent(thread.getId(), k -> new ArrayList<>())
+                                    .add(
+                                            new Load(
+                                                    loaded,
+                                                    nanos(event.getStartTime()),
+                                                    nanos(event.getEndTime())));
+                        }
+                        break;
+                    case "jdk.ClassDefine":
+                        // Classes loaded by explicit calls to ClassLoader#loadClass don't
+                        // produce a load event.
+                        ClassKey defined = key(event.getClass("definedClass"));
+                        if (defined != null) {
+                            classes.add(defined);
+                        }
+                        break;
+                    case "jdk.ExecutionSample":
+                        ClassKey initialized = initializedClass(event.getStackTrace());
+                        if (initialized != null) {
+                            samples.merge(initialized, 1, Integer::sum);
+                        }
+                        break;
+                    default:
+                }
+            }
+        }
+
+        Map<ClassKey, Stats> classStats = new HashMap<>();
+        for (ClassKey key : classes) {
+            classStats.computeIfAbsent(key, k -> new Stats()).classes = 1;
+        }
+        for (List<Load> loads : loadsByThread.values()) {
+            for (Load load : subtractNestedLoads(loads)) {
+                classStats.computeIfAbsent(load.key, k -> new Stats()).loadNanos += load.selfNanos;
+            }
+        }
+        for (Map.Entry<ClassKey, Integer> entry : samples.entrySet()) {
+            classStats.computeIfAbsent(entry.getKey(), k -> new Stats()).samples = entry.getValue();
+        }
+
+        Map<String, String> jarIndex = index(classpath);
+        Stats total = new Stats();
+        Map<String, Stats> loaderStats = new HashMap<>();
+        Map<String, Stats> jarStats = new HashMap<>();
+        Map<String, Stats> namedClassStats = new HashMap<>();
+        for (Map.Entry<ClassKey, Stats> entry : classStats.entrySet()) {
+            ClassKey key = entry.getKey();
+            Stats stats = entry.getValue();
+            String jar = locate(key, jarIndex, classpath);
+            total.add(stats);
+            loaderStats.computeIfAbsent(key.loader, k -> new Stats()).add(stats);
+            jarStats.computeIfAbsent(jar, k -> new Stats()).add(stats);
+            namedClassStats.put(key.name + " (" + jar + ")", stats);
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add(
+                String.format(
+                        Locale.ROOT,
+                        "%d classes loaded; %.1f ms spent loading classes, about %d ms in static"
+                                + " initializers (%d samples at %d ms intervals)",
+                        total.classes,
+                        total.loadNanos / 1e6,
+                        total.samples * samplingInterval.toMillis(),
+                        total.samples,
+                        samplingInterval.toMillis()));
+        List<String> topJars = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : rank(jarStats, samplingInterval)) {
+            if (topJars.size() == SUMMARY_ENTRIES) {
+                break;
+            }
+            topJars.add(
+                    String.format(
+                            Locale.ROOT,
+                            "%s (%.1f ms)",
+                            entry.getKey(),
+                            entry.getValue().getTotalNanos(samplingInterval) / 1e6));
+        }
+        lines.add("Top jars: " + String.join(", ", topJars));
+        table(lines, "Class loaders", "Class loader", loaderStats, samplingInterval, -1);
+        table(lines, "Jars", "Jar", jarStats, samplingInterval, -1);
+        table(lines, "Classes", "Class", namedClassStats, samplingInterval, REPORT_CLASSES);
+        return lines;
+    }
+
+    /**
+     * Compute the self time of the class loading events of a single thread by subtracting the time
+     * of the events nested in them.
+     */
+    private static List<Load> subtractNestedLoads(List<Load> loads) {
+        loads.sort(Comparator.comparingLong((Load load) -> load.start));
+        Deque<Load> stack = new ArrayDeque<>();
+        for (Load load : loads) {
+            while (!stack.isEmpty() && stack.peek().end <= load.start) {
+                stack.pop();
+            }
+            if (!stack.isEmpty()) {
+                stack.peek().selfNanos -= load.end - load.start;
+            }
+            stack.push(load);
+        }
+        return loads;
+    }
+
+    /** Get the class whose static initializer is the innermost one on the stack, if any. */
+    private static ClassKey initializedClass(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return null;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame() && frame.getMethod().getName().equals("<clinit>")) {
+                return key(frame.getMethod().getType());
+            }
+        }
+        return null;
+    }
+
+    private static ClassKey key(RecordedClass clazz) {
+        if (clazz == null || clazz.getName().startsWith("[")) {
+            return null;
+        }
+        return new ClassKey(clazz.getName(), loaderName(clazz.getClassLoader()));
+    }
+
+    private static String loaderName(RecordedClassLoader loader) {
+        if (loader == null || loader.getType() == null) {
+            return "bootstrap";
+        }
+        String type = loader.getType().getName();
+        return loader.getName() == null ? type : loader.getName() + " (" + type + ")";
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    /** Build an index of the classes in the jars of the classpath. */
+    private static Map<String, String> index(List<File> classpath) throws IOException {
+        Map<String, String> index = new HashMap<>();
+        for (File entry : classpath) {
+            if (!entry.isFile()) {
+                continue;
+            }
+            try (ZipFile zip = new ZipFile(entry)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.endsWith(".class") && !name.startsWith("META-INF/")) {
+                        index.putIfAbsent(
+                                name.substring(0, name.length() - 6).replace('/', '.'),
+                                entry.getName());
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /** Determine the jar or directory a class has been loaded from. */
+    private static String locate(ClassKey key, Map<String, String> jarIndex, List<File> classpath) {
+        String jar = jarIndex.get(key.name);
+        if (jar != null) {
+            return jar;
+        }
+        String resource = key.name.replace('.', File.separatorChar) + ".class";
+        for (File entry : classpath) {
+            if (entry.isDirectory() && new File(entry, resource).exists()) {
+                return entry.toString();
+            }
+        }
+        return "<" + key.loader + ">";
+    }
+
+    private static List<Map.Entry<String, Stats>> rank(
+            Map<String, Stats> stats, Duration samplingInterval) {
+        Function<Map.Entry<String, Stats>, Long> total =
+                e -> e.getValue().getTotalNanos(samplingInterval);
+        return stats.entrySet().stream()
+                .sorted(Comparator.comparing(total).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private static void table(
+            List<String> lines,
+            String title,
+            String column,
+            Map<String, Stats> stats,
+            Duration samplingInterval,
+            int limit) {
+        lines.add("");
+        lines.add(title + ":");
+        lines.add(
+                String.format(
+                        Locale.ROOT,
+                        "%10s %10s %8s  %s",
+                        "Load ms",
+                        "Clinit ms",
+                        "Classes",
+                        column));
+        List<Map.Entry<String, Stats>> ranked = rank(stats, samplingInterval);
+        if (limit != -1 && ranked.size() > limit) {
+            ranked = ranked.subList(0, limit);
+        }
+        for (Map.Entry<String, Stats> entry : ranked) {
+            Stats value = entry.getValue();
+            lines.add(
+                    String.format(
+                            Locale.ROOT,
+                            "%10.1f %10d %8d  %s",
+                            value.loadNanos / 1e6,
+                            value.samples * samplingInterval.toMillis(),
+                            value.classes,
+                            entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches resolved classpaths in memory and, optionally, on disk. Each entry records the size and
+ * modification time of the files it refers to and is discarded as soon as one of them changes.
+ */
+final class ClassPathCache {
+    interface Resolver {
+        List<File> resolve() throws Exception;
+    }
+
+    private static final class Entry {
+        private final List<File> files;
+        private final long[] lengths;
+        private final long[] lastModified;
+
+        Entry(List<File> files, long[] lengths, long[] lastModified) {
+            this.files = files;
+            this.lengths = lengths;
+            this.lastModified = lastModified;
+        }
+
+        static Entry create(List<File> files) {
+            long[] lengths = new long[files.size()];
+            long[] lastModified = new long[files.size()];
+            for (int i = 0; i < files.size(); i++) {
+                lengths[i] = files.get(i).length();
+                lastModified[i] = files.get(i).lastModified();
+            }
+            return new Entry(new ArrayList<>(files), lengths, lastModified);
+        }
+
+        boolean isValid() {
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                if (!file.exists()
+                        || file.length() != lengths[i]
+                        || file.lastModified() != lastModified[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Get a classpath from the cache or resolve it.
+     *
+     * @param directory the directory used to persist the entry, or {@code null} if the entry should
+     *     only be kept in memory
+     * @param key the cache key; it must identify the artifact as well as the repositories it is
+     *     resolved from
+     * @param resolver the resolver to invoke on a cache miss
+     */
+    List<File> get(File directory, String key, Resolver resolver) throws Exception {
+        Entry entry = entries.get(key);
+        if (entry == null && directory != null) {
+            entry = load(getFile(directory, key), key);
+        }
+        if (entry != null && entry.isValid()) {
+            entries.put(key, entry);
+            return new ArrayList<>(entry.files);
+        }
+        List<File> files = resolver.resolve();
+        entry = Entry.create(files);
+        entries.put(key, entry);
+        if (directory != null) {
+            save(getFile(directory, key), key, entry);
+        }
+        return files;
+    }
+
+    private static Path getFile(File directory, String key) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new Error(ex);
+        }
+        return directory
+                .toPath()
+                .resolve(
+                        HexFormat.of()
+                                        .formatHex(
+                                                digest.digest(key.getBytes(StandardCharsets.UTF_8)))
+                                + ".txt");
+    }
+
+    private static Entry load(Path file, String key) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        List<File> files = new ArrayList<>();
+        List<long[]> stamps = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            // Protect against hash collisions and files written by incompatible versions.
+            if (!key.equals(in.readLine())) {
+                return null;
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length != 3) {
+                    return null;
+                }
+                stamps.add(new long[] {Long.parseLong(parts[0]), Long.parseLong(parts[1])});
+                files.add(new File(parts[2]));
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        long[] lengths = new long[files.size()];
+        long[] lastModified = new long[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            lengths[i] = stamps.get(i)[0];
+            lastModified[i] = stamps.get(i)[1];
+        }
+        return new Entry(files, lengths, lastModified);
+    }
+
+    private static void save(Path file, String key, Entry entry) throws IOException {
+        Files.createDirectories(file.getParent());
+        // Write to a temporary file first so that concurrent builds never see a partial entry.
+        Path tmpFile = Files.createTempFile(file.getParent(), "classpath", ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                out.write(key);
+                out.write('\n');
+                for (int i = 0; i < entry.files.size(); i++) {
+                    out.write(entry.lengths[i] + "\t" + entry.lastModified[i] + "\t");
+                    out.write(entry.files.get(i).getPath());
+                    out.write('\n');
+                }
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+}
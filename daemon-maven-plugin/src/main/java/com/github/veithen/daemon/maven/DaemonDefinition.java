@@ -0,0 +1,53 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+
+/** A daemon to be started by {@link StartMojo}, together with the ports it exposes. */
+public class DaemonDefinition {
+    private DaemonArtifact daemonArtifact;
+    private PlexusConfiguration daemonConfiguration;
+    private Port[] ports;
+
+    public DaemonArtifact getDaemonArtifact() {
+        return daemonArtifact;
+    }
+
+    public void setDaemonArtifact(DaemonArtifact daemonArtifact) {
+        this.daemonArtifact = daemonArtifact;
+    }
+
+    public PlexusConfiguration getDaemonConfiguration() {
+        return daemonConfiguration;
+    }
+
+    public void setDaemonConfiguration(PlexusConfiguration daemonConfiguration) {
+        this.daemonConfiguration = daemonConfiguration;
+    }
+
+    public Port[] getPorts() {
+        return ports;
+    }
+
+    public void setPorts(Port[] ports) {
+        this.ports = ports;
+    }
+}
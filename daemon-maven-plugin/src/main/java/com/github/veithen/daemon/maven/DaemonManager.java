@@ -19,25 +19,46 @@
  */
 package com.github.veithen.daemon.maven;
 
-import java.io.File;
-import java.util.List;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.maven.execution.MavenSession;
-import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluator;
-import org.codehaus.plexus.configuration.PlexusConfiguration;
+
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
 
 public interface DaemonManager {
-    Map<String, Integer> startDaemon(
-            MavenSession session,
-            String[] vmArgs,
-            File workDir,
-            DaemonArtifact daemonArtifact,
-            List<String> testClasspath,
-            PlexusConfiguration configuration,
-            ExpressionEvaluator expressionEvaluator,
-            Map<String, Integer> ports)
-            throws Throwable;
+    /**
+     * Start a daemon. The daemon is started in the background so that several daemons can be
+     * started concurrently.
+     *
+     * @return a future that completes with the ports allocated by the daemon once it is ready
+     */
+    CompletableFuture<Map<String, Integer>> startDaemon(MavenSession session, DaemonSpec spec);
+
+    /**
+     * Wait until all daemons started by the current project are ready. This is only necessary if
+     * the futures returned by {@link #startDaemon(MavenSession, DaemonSpec)} have not been awaited
+     * by the caller.
+     *
+     * @throws Throwable the failure of the first daemon that couldn't be started
+     */
+    void awaitAll(MavenSession session) throws Throwable;
+
+    /**
+     * Collect a snapshot of the metrics of the daemons started by the current project, after
+     * waiting for pending startups. Daemons that fail to respond within the given timeout are
+     * skipped with a warning.
+     *
+     * @return the metrics, indexed by daemon
+     */
+    Map<String, MetricsResponse> collectMetrics(MavenSession session, Duration timeout);
 
-    void stopAll() throws Throwable;
+    /**
+     * Stop all daemons concurrently. Daemons that don't shut down within the given timeout are
+     * terminated. Daemons started with {@link DaemonSpec#isReuse()} are kept running for reuse by
+     * subsequent projects, unless the current project is the last one in the session. Persistent
+     * daemons (see {@link DaemonSpec#isPersistent()}) are detached and keep running.
+     */
+    void stopAll(MavenSession session, Duration gracefulTimeout) throws Throwable;
 }
@@ -0,0 +1,151 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps track of persistent daemons started in a given work directory. Each daemon occupies a slot
+ * identified by a key. The launcher writes its process ID, attach port and attach token to the
+ * slot's registry file and deletes the file when it terminates.
+ */
+final class DaemonRegistry {
+    static final class Registration {
+        private final long pid;
+        private final int port;
+        private final String token;
+
+        Registration(long pid, int port, String token) {
+            this.pid = pid;
+            this.port = port;
+            this.token = token;
+        }
+
+        long getPid() {
+            return pid;
+        }
+
+        int getPort() {
+            return port;
+        }
+
+        /** Get the token to send in the {@code ATTACH} message. */
+        String getToken() {
+            return token;
+        }
+    }
+
+    /**
+     * File locks are held on behalf of the whole JVM; this map ensures that threads in the same JVM
+     * don't attempt to acquire the same file lock concurrently.
+     */
+    private static final Map<Path, ReentrantLock> localLocks = new ConcurrentHashMap<>();
+
+    private final Path directory;
+
+    DaemonRegistry(File workDir) {
+        directory = workDir.toPath().resolve(".daemons");
+    }
+
+    File getRegistryFile(String key) {
+        return directory.resolve(key + ".properties").toFile();
+    }
+
+    File getLogFile(String key) {
+        return directory.resolve(key + ".log").toFile();
+    }
+
+    /**
+     * Acquire an exclusive lock on the given slot. The lock is shared with other Maven processes
+     * using the same work directory.
+     */
+    Closeable lock(String key) throws IOException {
+        Files.createDirectories(directory);
+        Path lockFile = directory.resolve(key + ".lock");
+        ReentrantLock localLock = localLocks.computeIfAbsent(lockFile, k -> new ReentrantLock());
+        localLock.lock();
+        FileChannel channel;
+        try {
+            channel =
+                    FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                channel.lock();
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+        } catch (IOException ex) {
+            localLock.unlock();
+            throw ex;
+        }
+        return () -> {
+            try {
+                // This also releases the file lock.
+                channel.close();
+            } finally {
+                localLock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Read the registration for the given slot.
+     *
+     * @return the registration, or {@code null} if no daemon is registered or the registry file is
+     *     invalid
+     */
+    Registration read(String key) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(getRegistryFile(key).toPath())) {
+            props.load(in);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+        String token = props.getProperty("token");
+        if (token == null) {
+            return null;
+        }
+        try {
+            return new Registration(
+                    Long.parseLong(props.getProperty("pid")),
+                    Integer.parseInt(props.getProperty("port")),
+                    token);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /** Remove a stale registration. */
+    void delete(String key) throws IOException {
+        Files.deleteIfExists(getRegistryFile(key).toPath());
+    }
+}
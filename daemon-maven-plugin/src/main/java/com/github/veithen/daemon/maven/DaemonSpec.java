@@ -0,0 +1,348 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluator;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+
+/** Describes a daemon to be started by {@link DaemonManager}. */
+public class DaemonSpec {
+    private String[] vmArgs;
+    private File workDir;
+    private DaemonArtifact daemonArtifact;
+    private List<String> testClasspath;
+    private PlexusConfiguration configuration;
+    private ExpressionEvaluator expressionEvaluator;
+    private Map<String, Integer> ports;
+    private int launcherPoolSize;
+    private boolean classDataSharing;
+    private boolean reuse;
+    private boolean persistent;
+    private Duration idleTimeout;
+    private boolean inProcess;
+    private boolean admissionControl;
+    private String cpuSet;
+    private File logDirectory;
+    private int logRetention;
+    private String consoleFilter;
+    private int consoleRateLimit;
+    private Level logLevel;
+    private File flightRecording;
+    private String flightRecorderSettings;
+    private boolean flightRecordingSummary;
+    private ClassLoadingProfile classLoadingProfile;
+    private Duration heartbeatInterval = Duration.ZERO;
+    private Duration startTimeout = Duration.ZERO;
+    private File threadDumpDirectory;
+    private File statusDirectory;
+    private final StartupTiming timing = new StartupTiming();
+
+    public String[] getVmArgs() {
+        return vmArgs;
+    }
+
+    public void setVmArgs(String[] vmArgs) {
+        this.vmArgs = vmArgs;
+    }
+
+    public File getWorkDir() {
+        return workDir;
+    }
+
+    public void setWorkDir(File workDir) {
+        this.workDir = workDir;
+    }
+
+    public DaemonArtifact getDaemonArtifact() {
+        return daemonArtifact;
+    }
+
+    public void setDaemonArtifact(DaemonArtifact daemonArtifact) {
+        this.daemonArtifact = daemonArtifact;
+    }
+
+    public List<String> getTestClasspath() {
+        return testClasspath;
+    }
+
+    public void setTestClasspath(List<String> testClasspath) {
+        this.testClasspath = testClasspath;
+    }
+
+    public PlexusConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    public void setConfiguration(PlexusConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    public ExpressionEvaluator getExpressionEvaluator() {
+        return expressionEvaluator;
+    }
+
+    public void setExpressionEvaluator(ExpressionEvaluator expressionEvaluator) {
+        this.expressionEvaluator = expressionEvaluator;
+    }
+
+    public Map<String, Integer> getPorts() {
+        return ports;
+    }
+
+    public void setPorts(Map<String, Integer> ports) {
+        this.ports = ports;
+    }
+
+    public int getLauncherPoolSize() {
+        return launcherPoolSize;
+    }
+
+    public void setLauncherPoolSize(int launcherPoolSize) {
+        this.launcherPoolSize = launcherPoolSize;
+    }
+
+    public boolean isClassDataSharing() {
+        return classDataSharing;
+    }
+
+    public void setClassDataSharing(boolean classDataSharing) {
+        this.classDataSharing = classDataSharing;
+    }
+
+    /**
+     * Indicates whether the daemon may be kept running after {@link
+     * DaemonManager#stopAll(org.apache.maven.execution.MavenSession, java.time.Duration)} and
+     * reused by a subsequent project that requests a daemon with the same fingerprint.
+     */
+    public boolean isReuse() {
+        return reuse;
+    }
+
+    public void setReuse(boolean reuse) {
+        this.reuse = reuse;
+    }
+
+    /**
+     * Indicates whether the daemon should outlive the Maven process. A persistent daemon is
+     * registered in the work directory and subsequent builds attach to it instead of starting a new
+     * one.
+     */
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    /** The time after which a persistent daemon stops if no build attaches to it. */
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Indicates whether the daemon should run in the Maven JVM instead of a launcher JVM. In that
+     * case, the JVM arguments are ignored.
+     */
+    public boolean isInProcess() {
+        return inProcess;
+    }
+
+    public void setInProcess(boolean inProcess) {
+        this.inProcess = inProcess;
+    }
+
+    /**
+     * Indicates whether the launch of the daemon should be delayed until the host has enough memory
+     * and processors for it.
+     */
+    public boolean isAdmissionControl() {
+        return admissionControl;
+    }
+
+    public void setAdmissionControl(boolean admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * The CPUs the daemon process is restricted to, in the list format used by {@code taskset}, or
+     * {@code null} if the daemon may run on all CPUs.
+     */
+    public String getCpuSet() {
+        return cpuSet;
+    }
+
+    public void setCpuSet(String cpuSet) {
+        this.cpuSet = cpuSet;
+    }
+
+    /**
+     * The directory to write the output of the daemon to, or {@code null} if the output should be
+     * copied to the Maven log.
+     */
+    public File getLogDirectory() {
+        return logDirectory;
+    }
+
+    public void setLogDirectory(File logDirectory) {
+        this.logDirectory = logDirectory;
+    }
+
+    /** The number of log files to keep for each daemon. */
+    public int getLogRetention() {
+        return logRetention;
+    }
+
+    public void setLogRetention(int logRetention) {
+        this.logRetention = logRetention;
+    }
+
+    /**
+     * A regular expression selecting the lines of the log file to mirror to the Maven log, or
+     * {@code null} if no lines should be mirrored.
+     */
+    public String getConsoleFilter() {
+        return consoleFilter;
+    }
+
+    public void setConsoleFilter(String consoleFilter) {
+        this.consoleFilter = consoleFilter;
+    }
+
+    /** The maximum number of lines per second to mirror to the Maven log. */
+    public int getConsoleRateLimit() {
+        return consoleRateLimit;
+    }
+
+    public void setConsoleRateLimit(int consoleRateLimit) {
+        this.consoleRateLimit = consoleRateLimit;
+    }
+
+    /**
+     * The minimum level of the {@code java.util.logging} records the daemon should stream to the
+     * Maven log, or {@code null} if log streaming is disabled.
+     */
+    public Level getLogLevel() {
+        return logLevel;
+    }
+
+    public void setLogLevel(Level logLevel) {
+        this.logLevel = logLevel;
+    }
+
+    /**
+     * The file to write a Java Flight Recorder recording to when the daemon is stopped, or {@code
+     * null} if no recording should be made.
+     */
+    public File getFlightRecording() {
+        return flightRecording;
+    }
+
+    public void setFlightRecording(File flightRecording) {
+        this.flightRecording = flightRecording;
+    }
+
+    /** The name of a predefined JFR configuration or the path of a .jfc file. */
+    public String getFlightRecorderSettings() {
+        return flightRecorderSettings;
+    }
+
+    public void setFlightRecorderSettings(String flightRecorderSettings) {
+        this.flightRecorderSettings = flightRecorderSettings;
+    }
+
+    /** Whether to log a summary of the flight recording after the daemon has been stopped. */
+    public boolean isFlightRecordingSummary() {
+        return flightRecordingSummary;
+    }
+
+    public void setFlightRecordingSummary(boolean flightRecordingSummary) {
+        this.flightRecordingSummary = flightRecordingSummary;
+    }
+
+    /**
+     * The profile of the class loading during the startup of the daemon, or {@code null} if class
+     * loading shouldn't be profiled.
+     */
+    ClassLoadingProfile getClassLoadingProfile() {
+        return classLoadingProfile;
+    }
+
+    void setClassLoadingProfile(ClassLoadingProfile classLoadingProfile) {
+        this.classLoadingProfile = classLoadingProfile;
+    }
+
+    /**
+     * The interval at which the launcher sends heartbeats, or zero to disable heartbeats. Not
+     * supported for persistent daemons.
+     */
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /** The time the daemon is given to start, or zero for no limit. */
+    public Duration getStartTimeout() {
+        return startTimeout;
+    }
+
+    public void setStartTimeout(Duration startTimeout) {
+        this.startTimeout = startTimeout;
+    }
+
+    /** The directory where thread dumps of hung daemons are saved. */
+    public File getThreadDumpDirectory() {
+        return threadDumpDirectory;
+    }
+
+    public void setThreadDumpDirectory(File threadDumpDirectory) {
+        this.threadDumpDirectory = threadDumpDirectory;
+    }
+
+    /**
+     * The directory of the registry read by the {@code status} and {@code top} goals, or {@code
+     * null} if the daemon should not be registered.
+     */
+    public File getStatusDirectory() {
+        return statusDirectory;
+    }
+
+    public void setStatusDirectory(File statusDirectory) {
+        this.statusDirectory = statusDirectory;
+    }
+
+    /** The timing of the startup of the daemon, filled in by the {@link DaemonManager}. */
+    public StartupTiming getTiming() {
+        return timing;
+    }
+}
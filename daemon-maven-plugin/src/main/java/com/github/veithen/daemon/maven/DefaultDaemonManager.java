@@ -19,19 +19,44 @@
  */
 package com.github.veithen.daemon.maven;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.ArtifactUtils;
 import org.apache.maven.artifact.handler.manager.ArtifactHandlerManager;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
@@ -44,16 +69,29 @@ import org.apache.maven.toolchain.Toolchain;
 import org.apache.maven.toolchain.ToolchainManager;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
-import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluator;
-import org.codehaus.plexus.configuration.PlexusConfiguration;
 import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Disposable;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Initializable;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.InitializationException;
 import org.codehaus.plexus.util.IOUtil;
+import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.util.artifact.JavaScopes;
 
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Message;
+
 @Component(role = DaemonManager.class, hint = "default")
-public class DefaultDaemonManager implements DaemonManager {
+public class DefaultDaemonManager implements DaemonManager, Initializable, Disposable {
     private static final String VERSION;
 
+    /** The maximum time to wait for a persistent daemon to accept a new connection. */
+    private static final Duration ATTACH_TIMEOUT = Duration.ofSeconds(10);
+
+    /** The time a persistent daemon is given to stop when it needs to be replaced. */
+    private static final Duration REPLACE_TIMEOUT = Duration.ofSeconds(60);
+
     static {
         try (InputStream in = DefaultDaemonManager.class.getResourceAsStream("version")) {
             VERSION = IOUtil.toString(in, "utf-8");
@@ -62,16 +100,114 @@ public class DefaultDaemonManager implements DaemonManager {
         }
     }
 
-    private final List<RemoteDaemon> daemons = new ArrayList<>();
+    /**
+     * The daemons started by each project. With parallel builds, several projects may start and
+     * stop daemons concurrently; access to this map must be synchronized.
+     */
+    private final Map<MavenProject, List<ManagedDaemon>> daemons = new HashMap<>();
+
+    /**
+     * The startups initiated by each project that haven't been awaited yet. Guarded by {@link
+     * #daemons}.
+     */
+    private final Map<MavenProject, List<CompletableFuture<?>>> startups = new HashMap<>();
+
+    /**
+     * Daemons that have been released by {@link #stopAll(MavenSession, Duration)} but that are kept
+     * running so that they can be reused by a subsequent project, indexed by fingerprint. Guarded
+     * by {@link #daemons}.
+     */
+    private final Map<String, Deque<ManagedDaemon>> idleDaemons = new HashMap<>();
+
+    /**
+     * The configuration descriptors returned by previously started daemons, indexed by daemon
+     * classpath. They allow to compute the fingerprint for a daemon without starting it.
+     */
+    private final Map<List<File>, Descriptor> descriptors = new ConcurrentHashMap<>();
+
+    /** The capacity reserved for the daemon processes subject to admission control. */
+    private final Map<ProcessHandle, AdmissionScheduler.Admission> admissions =
+            new ConcurrentHashMap<>();
+
+    /** The JVM shutdown hook that stops idle daemons. Guarded by {@link #daemons}. */
+    private Thread shutdownHook;
+
+    /** The graceful timeout to use when stopping idle daemons. Guarded by {@link #daemons}. */
+    private Duration idleStopTimeout;
+
+    private final ClassPathCache classPathCache = new ClassPathCache();
+    private final ExecutorService executor =
+            Executors.newCachedThreadPool(
+                    r -> {
+                        Thread thread = new Thread(r, "daemon-manager");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+    private LauncherSupervisor launcherSupervisor;
+    private LauncherPool launcherPool;
+    private AdmissionScheduler admissionScheduler;
 
     @Requirement private Logger logger;
     @Requirement private ToolchainManager toolchainManager;
     @Requirement private ArtifactHandlerManager artifactHandlerManager;
     @Requirement private ProjectDependenciesResolver dependencyResolver;
 
+    public DefaultDaemonManager() {}
+
+    /** Constructor for unit tests; the instance is not initialized. */
+    DefaultDaemonManager(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void initialize() throws InitializationException {
+        try {
+            launcherSupervisor = new LauncherSupervisor(logger);
+        } catch (IOException ex) {
+            throw new InitializationException("Failed to create launcher supervisor", ex);
+        }
+        admissionScheduler = AdmissionScheduler.create(logger);
+        launcherPool =
+                new LauncherPool(
+                        logger, executor, launcherSupervisor, admissionScheduler, this::track);
+    }
+
+    @Override
+    public void dispose() {
+        stopIdleDaemons();
+        synchronized (daemons) {
+            if (shutdownHook != null) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                } catch (IllegalStateException ex) {
+                    // The JVM is already shutting down.
+                }
+                shutdownHook = null;
+            }
+        }
+        launcherPool.shutdown();
+        executor.shutdown();
+        try {
+            launcherSupervisor.close();
+        } catch (IOException ex) {
+            logger.debug("Failed to close launcher supervisor", ex);
+        }
+    }
+
+    private static File getCacheDirectory(MavenSession session, String name) {
+        return new File(
+                session.getRepositorySession().getLocalRepository().getBasedir(),
+                ".cache/daemon-maven-plugin/" + name);
+    }
+
     private List<File> getClassPathForArtifact(
-            MavenSession session, String groupId, String artifactId, String version)
-            throws DependencyResolutionException {
+            MavenSession session,
+            MavenProject currentProject,
+            String groupId,
+            String artifactId,
+            String version)
+            throws Exception {
+        // The project used to resolve the classpath; the repositories are part of the cache key.
         MavenProject project = new MavenProject();
         Dependency dependency = new Dependency();
         dependency.setGroupId(groupId);
@@ -82,8 +218,36 @@ public class DefaultDaemonManager implements DaemonManager {
         project.setRemoteArtifactRepositories(
                 new ArrayList<>(
                         groupId.equals("com.github.veithen.daemon")
-                                ? session.getCurrentProject().getPluginArtifactRepositories()
-                                : session.getCurrentProject().getRemoteArtifactRepositories()));
+                                ? currentProject.getPluginArtifactRepositories()
+                                : currentProject.getRemoteArtifactRepositories()));
+        StringBuilder key = new StringBuilder();
+        key.append(groupId).append(':').append(artifactId).append(':').append(version);
+        for (RemoteRepository repository :
+                RepositoryUtils.toRepos(project.getRemoteArtifactRepositories())) {
+            key.append(' ').append(repository.getId()).append('=').append(repository.getUrl());
+        }
+        // Snapshots may be updated remotely; only cache them for the duration of the session.
+        File cacheDirectory =
+                ArtifactUtils.isSnapshot(version) ? null : getCacheDirectory(session, "classpath");
+        return classPathCache.get(
+                cacheDirectory,
+                key.toString(),
+                () -> {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(
+                                "Resolving classpath for "
+                                        + groupId
+                                        + ":"
+                                        + artifactId
+                                        + ":"
+                                        + version);
+                    }
+                    return resolveClassPath(session, project);
+                });
+    }
+
+    private List<File> resolveClassPath(MavenSession session, MavenProject project)
+            throws DependencyResolutionException {
         DefaultDependencyResolutionRequest resolution =
                 new DefaultDependencyResolutionRequest(project, session.getRepositorySession());
         DependencyResolutionResult resolutionResult = dependencyResolver.resolve(resolution);
@@ -96,17 +260,22 @@ public class DefaultDaemonManager implements DaemonManager {
         return artifacts.stream().map(Artifact::getFile).collect(Collectors.toList());
     }
 
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(
+                () -> {
+                    try {
+                        future.complete(task.call());
+                    } catch (Throwable ex) {
+                        future.completeExceptionally(ex);
+                    }
+                });
+        return future;
+    }
+
     @Override
-    public Map<String, Integer> startDaemon(
-            MavenSession session,
-            String[] vmArgs,
-            File workDir,
-            DaemonArtifact daemonArtifact,
-            List<String> testClasspath,
-            PlexusConfiguration configuration,
-            ExpressionEvaluator expressionEvaluator,
-            Map<String, Integer> ports)
-            throws Throwable {
+    public CompletableFuture<Map<String, Integer>> startDaemon(
+            MavenSession session, DaemonSpec spec) {
         // Locate java executable to use
         String jvm;
         Toolchain tc = toolchainManager.getToolchainFromBuildContext("jdk", session);
@@ -124,59 +293,829 @@ public class DefaultDaemonManager implements DaemonManager {
             logger.debug("Java executable: " + jvm);
         }
 
+        // The current project is tracked per thread; capture it before switching threads.
+        MavenProject currentProject = session.getCurrentProject();
+        long start = System.nanoTime();
+        CompletableFuture<Map<String, Integer>> future =
+                launchDaemon(session, currentProject, jvm, spec)
+                        .thenApply(
+                                ports -> {
+                                    spec.getTiming().record("total", System.nanoTime() - start);
+                                    return checkPorts(spec, ports);
+                                });
+        synchronized (daemons) {
+            startups.computeIfAbsent(currentProject, k -> new ArrayList<>()).add(future);
+        }
+        return future;
+    }
+
+    private static Map<String, Integer> checkPorts(
+            DaemonSpec spec, Map<String, Integer> allocatedPorts) {
+        for (Map.Entry<String, Integer> port : spec.getPorts().entrySet()) {
+            if (port.getValue() != 0
+                    && !port.getValue().equals(allocatedPorts.get(port.getKey()))) {
+                throw new IllegalStateException(
+                        "Daemon failed to allocate the expected port number for port "
+                                + port.getKey());
+            }
+        }
+        return allocatedPorts;
+    }
+
+    private CompletableFuture<Map<String, Integer>> launchDaemon(
+            MavenSession session, MavenProject currentProject, String jvm, DaemonSpec spec) {
+        DaemonArtifact daemonArtifact = spec.getDaemonArtifact();
+        // The launcher doesn't need the daemon classpath before INIT. Resolve it while the
+        // launcher JVM is starting so that the resolution time is hidden behind JVM startup.
+        CompletableFuture<List<File>> daemonClasspathFuture =
+                submit(
+                        () ->
+                                spec.getTiming()
+                                        .measure(
+                                                "resolve",
+                                                () ->
+                                                        getClassPathForArtifact(
+                                                                session,
+                                                                currentProject,
+                                                                daemonArtifact.getGroupId(),
+                                                                daemonArtifact.getArtifactId(),
+                                                                daemonArtifact.getVersion())));
+        if (!spec.isReuse() && !spec.isPersistent() && !spec.isInProcess()) {
+            return startNewDaemon(session, currentProject, jvm, spec, daemonClasspathFuture);
+        }
+        // Look for a reusable or persistent daemon before spawning a launcher. In-process daemons
+        // need the daemon classpath before anything else anyway.
+        return daemonClasspathFuture
+                .thenCompose(
+                        daemonClasspath ->
+                                submit(
+                                        () ->
+                                                spec.isReuse()
+                                                        ? reuseDaemon(
+                                                                currentProject,
+                                                                jvm,
+                                                                spec,
+                                                                daemonClasspath)
+                                                        : null))
+                .thenCompose(
+                        ports -> {
+                            if (ports != null) {
+                                return CompletableFuture.completedFuture(ports);
+                            } else if (spec.isInProcess()) {
+                                return submit(
+                                        () ->
+                                                startInProcessDaemon(
+                                                        currentProject,
+                                                        jvm,
+                                                        spec,
+                                                        daemonClasspathFuture.join()));
+                            } else if (spec.isPersistent()) {
+                                return submit(
+                                        () ->
+                                                startPersistentDaemon(
+                                                        session,
+                                                        currentProject,
+                                                        jvm,
+                                                        spec,
+                                                        daemonClasspathFuture.join()));
+                            } else {
+                                return startNewDaemon(
+                                        session, currentProject, jvm, spec, daemonClasspathFuture);
+                            }
+                        });
+    }
+
+    private CompletableFuture<Map<String, Integer>> startNewDaemon(
+            MavenSession session,
+            MavenProject currentProject,
+            String jvm,
+            DaemonSpec spec,
+            CompletableFuture<List<File>> daemonClasspathFuture) {
+        CompletableFuture<LauncherProcess> launcherFuture;
+        if (spec.isClassDataSharing()) {
+            // The archive covers the daemon classes too, so we need to know the daemon classpath
+            // before spawning the launcher.
+            launcherFuture =
+                    daemonClasspathFuture.thenCompose(
+                            daemonClasspath ->
+                                    submit(
+                                            () ->
+                                                    acquireLauncher(
+                                                            session,
+                                                            currentProject,
+                                                            jvm,
+                                                            spec,
+                                                            daemonClasspath,
+                                                            null)));
+        } else {
+            launcherFuture =
+                    submit(() -> acquireLauncher(session, currentProject, jvm, spec, null, null));
+        }
+        return launcherFuture.thenCompose(
+                launcher ->
+                        daemonClasspathFuture
+                                .whenComplete(
+                                        (daemonClasspath, ex) -> {
+                                            if (ex != null) {
+                                                closeQuietly(launcher);
+                                            }
+                                        })
+                                .thenCompose(
+                                        daemonClasspath ->
+                                                submit(
+                                                        () ->
+                                                                startDaemon(
+                                                                        currentProject,
+                                                                        jvm,
+                                                                        spec,
+                                                                        launcher,
+                                                                        daemonClasspath,
+                                                                        null))));
+    }
+
+    private Map<String, Integer> startInProcessDaemon(
+            MavenProject currentProject, String jvm, DaemonSpec spec, List<File> daemonClasspath)
+            throws Exception {
+        InProcessDaemon daemon =
+                spec.getTiming()
+                        .measure(
+                                "load",
+                                () ->
+                                        InProcessDaemon.load(
+                                                logger,
+                                                spec.getDaemonArtifact().getArtifactId(),
+                                                daemonClasspath));
+        register(currentProject, daemon);
+        Descriptor descriptor = daemon.getDescriptor();
+        descriptors.put(daemonClasspath, descriptor);
+        Message configuration =
+                PlexusConfigurationConverter.convert(
+                        spec.getConfiguration(), spec.getExpressionEvaluator(), descriptor);
+        Map<String, Integer> ports =
+                spec.getTiming()
+                        .measure(
+                                "start",
+                                () ->
+                                        daemon.start(
+                                                configuration,
+                                                spec.getTestClasspath(),
+                                                spec.getPorts()));
+        if (spec.isReuse()) {
+            daemon.setFingerprint(
+                    fingerprint(
+                            jvm,
+                            spec,
+                            daemonClasspath,
+                            configuration.toByteString(),
+                            daemon.isTestClasspathUsed()));
+        }
+        return ports;
+    }
+
+    /**
+     * Attach to a persistent daemon registered in the work directory, or start a new one if no
+     * suitable daemon is available.
+     */
+    private Map<String, Integer> startPersistentDaemon(
+            MavenSession session,
+            MavenProject currentProject,
+            String jvm,
+            DaemonSpec spec,
+            List<File> daemonClasspath)
+            throws Exception {
+        DaemonRegistry registry = new DaemonRegistry(spec.getWorkDir());
+        // The configuration isn't part of the key; a daemon with a different configuration
+        // occupies the same slot and is replaced.
+        String key = fingerprint(jvm, spec, daemonClasspath, null, true);
+        Closeable lock = registry.lock(key);
+        try {
+            RemoteDaemon daemon;
+            try {
+                daemon =
+                        spec.getTiming()
+                                .measure(
+                                        "attach",
+                                        () ->
+                                                attachDaemon(
+                                                        currentProject,
+                                                        registry,
+                                                        key,
+                                                        spec,
+                                                        daemonClasspath));
+            } catch (SocketTimeoutException ex) {
+                logger.warn(
+                        "Persistent daemon "
+                                + spec.getDaemonArtifact().getArtifactId()
+                                + " is in use by another build; starting a new daemon for this"
+                                + " build only");
+                LauncherProcess launcher =
+                        acquireLauncher(
+                                session,
+                                currentProject,
+                                jvm,
+                                spec,
+                                spec.isClassDataSharing() ? daemonClasspath : null,
+                                null);
+                return startDaemon(currentProject, jvm, spec, launcher, daemonClasspath, null);
+            }
+            if (daemon != null) {
+                return daemon.getPorts();
+            }
+            File logFile = registry.getLogFile(key);
+            logger.info(
+                    "Starting persistent daemon "
+                            + spec.getDaemonArtifact().getArtifactId()
+                            + "; output is written to "
+                            + logFile);
+            LauncherProcess launcher =
+                    acquireLauncher(
+                            session,
+                            currentProject,
+                            jvm,
+                            spec,
+                            spec.isClassDataSharing() ? daemonClasspath : null,
+                            logFile);
+            return startDaemon(
+                    currentProject,
+                    jvm,
+                    spec,
+                    launcher,
+                    daemonClasspath,
+                    registry.getRegistryFile(key));
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Attach to the persistent daemon registered in the given slot.
+     *
+     * @return the daemon, or {@code null} if there is no usable daemon in the slot
+     * @throws SocketTimeoutException if the daemon is in use by another build
+     */
+    private RemoteDaemon attachDaemon(
+            MavenProject currentProject,
+            DaemonRegistry registry,
+            String key,
+            DaemonSpec spec,
+            List<File> daemonClasspath)
+            throws Exception {
+        DaemonRegistry.Registration registration = registry.read(key);
+        if (registration == null) {
+            return null;
+        }
+        Optional<ProcessHandle> process = ProcessHandle.of(registration.getPid());
+        if (process.isEmpty() || !process.get().isAlive()) {
+            registry.delete(key);
+            return null;
+        }
+        LauncherProcess launcher;
+        try {
+            launcher =
+                    LauncherProcess.attach(process.get(), registration.getPort(), ATTACH_TIMEOUT);
+        } catch (IOException ex) {
+            logger.debug("Failed to connect to persistent daemon", ex);
+            registry.delete(key);
+            return null;
+        }
         RemoteDaemon daemon =
                 new RemoteDaemon(
                         logger,
+                        spec.getDaemonArtifact().getArtifactId(),
+                        launcher,
+                        daemonClasspath,
+                        spec.getTestClasspath(),
+                        spec.getPorts(),
+                        spec.getTiming());
+        Descriptor descriptor;
+        try {
+            // The daemon only serves one build at a time; if it doesn't respond, another build
+            // is attached to it.
+            launcher.setReadTimeout(ATTACH_TIMEOUT);
+            descriptor = daemon.attach(registration.getToken());
+            launcher.setReadTimeout(Duration.ZERO);
+        } catch (Exception ex) {
+            closeQuietly(launcher);
+            throw ex;
+        }
+        descriptors.put(daemonClasspath, descriptor);
+        if (!convertConfiguration(spec, descriptor).equals(daemon.getConfiguration())) {
+            logger.info("Configuration of daemon " + daemon + " has changed; restarting");
+            daemon.stop(REPLACE_TIMEOUT);
+            return null;
+        }
+        logger.info("Attached to persistent daemon " + daemon);
+        register(currentProject, daemon);
+        publishStatus(currentProject, spec, daemon);
+        return daemon;
+    }
+
+    /**
+     * Attempt to reuse an idle daemon with the same fingerprint.
+     *
+     * @return the ports of the reused daemon, or {@code null} if no matching daemon is available
+     */
+    private Map<String, Integer> reuseDaemon(
+            MavenProject currentProject, String jvm, DaemonSpec spec, List<File> daemonClasspath)
+            throws Exception {
+        Descriptor descriptor = descriptors.get(daemonClasspath);
+        if (descriptor == null) {
+            // No daemon has been started with this classpath yet.
+            return null;
+        }
+        ByteString configuration = convertConfiguration(spec, descriptor);
+        // Daemons that didn't access the test classpath can be reused regardless of it.
+        List<String> fingerprints =
+                List.of(
+                        fingerprint(jvm, spec, daemonClasspath, configuration, false),
+                        fingerprint(jvm, spec, daemonClasspath, configuration, true));
+        ManagedDaemon daemon = takeIdleDaemon(currentProject, fingerprints);
+        return daemon == null ? null : daemon.getPorts();
+    }
+
+    /**
+     * Take an idle daemon with one of the given fingerprints and hand it over to the given project,
+     * together with the capacity reserved for it by admission control.
+     *
+     * @return the daemon, or {@code null} if no matching daemon is available
+     */
+    ManagedDaemon takeIdleDaemon(MavenProject currentProject, List<String> fingerprints) {
+        synchronized (daemons) {
+            for (String fingerprint : fingerprints) {
+                Deque<ManagedDaemon> candidates = idleDaemons.get(fingerprint);
+                while (candidates != null && !candidates.isEmpty()) {
+                    ManagedDaemon daemon = candidates.poll();
+                    if (candidates.isEmpty()) {
+                        idleDaemons.remove(fingerprint);
+                    }
+                    if (daemon.isAlive()) {
+                        logger.info("Reusing daemon " + daemon);
+                        if (daemon instanceof RemoteDaemon) {
+                            AdmissionScheduler.Admission admission =
+                                    admissions.get(((RemoteDaemon) daemon).getProcess());
+                            if (admission != null) {
+                                admission.transfer(currentProject);
+                            }
+                        }
+                        register(currentProject, daemon);
+                        return daemon;
+                    }
+                    logger.warn("Idle daemon " + daemon + " has terminated unexpectedly");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get a launcher for the given daemon.
+     *
+     * @param daemonClasspath the daemon classpath if class data sharing is enabled, {@code null}
+     *     otherwise
+     * @param outputFile the file to write the output of a persistent launcher to, or {@code null}
+     *     to copy the output to the Maven log
+     */
+    private LauncherProcess acquireLauncher(
+            MavenSession session,
+            MavenProject currentProject,
+            String jvm,
+            DaemonSpec spec,
+            List<File> daemonClasspath,
+            File outputFile)
+            throws Exception {
+        List<File> launcherClasspath =
+                getClassPathForArtifact(
+                        session,
+                        currentProject,
+                        "com.github.veithen.daemon",
+                        "daemon-launcher",
+                        VERSION);
+        ClassDataArchive classDataArchive = null;
+        if (daemonClasspath != null) {
+            classDataArchive =
+                    spec.getTiming()
+                            .measure(
+                                    "archive",
+                                    () ->
+                                            ClassDataArchive.create(
+                                                    jvm,
+                                                    getCacheDirectory(session, "cds"),
+                                                    spec.getVmArgs(),
+                                                    launcherClasspath,
+                                                    daemonClasspath));
+            if (classDataArchive == null) {
+                logger.warn("Class data sharing is not supported by " + jvm);
+            } else if (outputFile != null && !classDataArchive.exists()) {
+                // The archive is written when the launcher exits, which for a persistent launcher
+                // happens after this build has completed.
+                classDataArchive = null;
+            }
+        }
+        LauncherCommand command =
+                new LauncherCommand(
                         jvm,
-                        vmArgs,
-                        workDir,
-                        getClassPathForArtifact(
-                                session, "com.github.veithen.daemon", "daemon-launcher", VERSION),
-                        getClassPathForArtifact(
-                                session,
-                                daemonArtifact.getGroupId(),
-                                daemonArtifact.getArtifactId(),
-                                daemonArtifact.getVersion()),
-                        testClasspath,
+                        spec.getVmArgs(),
+                        spec.getWorkDir(),
+                        launcherClasspath,
+                        classDataArchive,
+                        outputFile,
+                        spec.getCpuSet(),
+                        spec.getLogDirectory() == null
+                                ? null
+                                : new OutputSettings(
+                                        spec.getLogDirectory(),
+                                        spec.getDaemonArtifact().getArtifactId(),
+                                        spec.getLogRetention(),
+                                        spec.getConsoleFilter(),
+                                        spec.getConsoleRateLimit()));
+        int poolSize = outputFile == null ? spec.getLauncherPoolSize() : 0;
+        Object owner = spec.isAdmissionControl() ? currentProject : null;
+        long spawnStart = System.nanoTime();
+        // The capacity reserved for a launcher from the pool is accounted to the owner.
+        LauncherProcess launcher = launcherPool.poll(command, owner);
+        if (launcher != null) {
+            launcherPool.refill(command, poolSize, owner != null);
+        } else {
+            AdmissionScheduler.Admission admission = null;
+            if (owner != null) {
+                // Idle daemons kept for reuse and idle launchers hold capacity that may be needed
+                // here.
+                admission =
+                        spec.getTiming()
+                                .measure(
+                                        "admission",
+                                        () ->
+                                                admissionScheduler.admit(
+                                                        owner,
+                                                        spec.getDaemonArtifact().getArtifactId(),
+                                                        spec.getVmArgs(),
+                                                        () -> {
+                                                            stopIdleDaemons();
+                                                            launcherPool.shutdown();
+                                                        }));
+                spawnStart = System.nanoTime();
+            }
+            // Refill the pool only now so that the idle launchers don't take the capacity needed
+            // by this daemon.
+            launcherPool.refill(command, poolSize, owner != null);
+            try {
+                launcher = LauncherProcess.start(logger, launcherSupervisor, command);
+            } catch (Exception ex) {
+                if (admission != null) {
+                    admission.release();
+                }
+                throw ex;
+            }
+            if (admission != null) {
+                track(launcher.getProcess(), admission);
+            }
+        }
+        // For a launcher from the pool, this is the time it took to get it.
+        spec.getTiming().record("spawn", System.nanoTime() - spawnStart);
+        return launcher;
+    }
+
+    /** Release the capacity reserved for a process when it terminates, whatever the reason. */
+    void track(ProcessHandle process, AdmissionScheduler.Admission admission) {
+        admissions.put(process, admission);
+        process.onExit()
+                .thenRun(
+                        () -> {
+                            admissions.remove(process);
+                            admission.release();
+                        });
+    }
+
+    private Map<String, Integer> startDaemon(
+            MavenProject currentProject,
+            String jvm,
+            DaemonSpec spec,
+            LauncherProcess launcher,
+            List<File> daemonClasspath,
+            File registryFile)
+            throws Exception {
+        RemoteDaemon daemon =
+                new RemoteDaemon(
+                        logger,
+                        spec.getDaemonArtifact().getArtifactId(),
+                        launcher,
+                        daemonClasspath,
+                        spec.getTestClasspath(),
+                        spec.getPorts(),
+                        spec.getTiming());
+        register(currentProject, daemon);
+        Descriptor descriptor =
+                daemon.init(spec.getClassLoadingProfile(), spec.getStatusDirectory() != null);
+        descriptors.put(daemonClasspath, descriptor);
+        ByteString configuration = convertConfiguration(spec, descriptor);
+        Map<String, Integer> ports =
+                daemon.start(
                         configuration,
-                        expressionEvaluator,
-                        ports);
-        daemons.add(daemon);
-        return daemon.startDaemon();
+                        registryFile,
+                        spec.getIdleTimeout(),
+                        spec.getLogLevel(),
+                        spec.getFlightRecording() == null
+                                ? null
+                                : new FlightRecording(
+                                        spec.getFlightRecording(),
+                                        spec.getFlightRecorderSettings(),
+                                        spec.isFlightRecordingSummary()),
+                        new Watchdog(
+                                spec.getHeartbeatInterval(),
+                                spec.getStartTimeout(),
+                                spec.getThreadDumpDirectory()));
+        if (spec.isReuse()) {
+            daemon.setFingerprint(
+                    fingerprint(
+                            jvm,
+                            spec,
+                            daemonClasspath,
+                            configuration,
+                            daemon.isTestClasspathUsed()));
+        }
+        publishStatus(currentProject, spec, daemon);
+        return ports;
+    }
+
+    /** Add a daemon to the status registry read by the {@code status} and {@code top} goals. */
+    private void publishStatus(MavenProject project, DaemonSpec spec, RemoteDaemon daemon) {
+        if (spec.getStatusDirectory() == null || daemon.getMonitorPort() == 0) {
+            // A persistent daemon may have been started by a build that didn't enable monitoring.
+            return;
+        }
+        try {
+            new StatusRegistry(spec.getStatusDirectory()).register(daemon, project.getArtifactId());
+        } catch (IOException ex) {
+            logger.warn("Failed to register daemon " + daemon + " in the status registry", ex);
+        }
+    }
+
+    void register(MavenProject project, ManagedDaemon daemon) {
+        synchronized (daemons) {
+            daemons.computeIfAbsent(project, k -> new ArrayList<>()).add(daemon);
+        }
+    }
+
+    private static ByteString convertConfiguration(DaemonSpec spec, Descriptor descriptor)
+            throws Exception {
+        return PlexusConfigurationConverter.convert(
+                        spec.getConfiguration(), spec.getExpressionEvaluator(), descriptor)
+                .toByteString();
+    }
+
+    /**
+     * Compute a hash of all inputs that determine the behavior of a daemon. Two daemons with the
+     * same fingerprint are interchangeable. Note that the working directory isn't included: a
+     * reused daemon keeps running in the working directory of the project that started it.
+     *
+     * @param configuration the serialized configuration, or {@code null} to compute a fingerprint
+     *     that only depends on the other inputs
+     * @param includeTestClasspath whether to include the test classpath; this is only necessary if
+     *     the daemon accesses it
+     */
+    static String fingerprint(
+            String jvm,
+            DaemonSpec spec,
+            List<File> daemonClasspath,
+            ByteString configuration,
+            boolean includeTestClasspath)
+            throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new Error(ex);
+        }
+        // In-process daemons ignore the JVM and its arguments, but they must not be confused with
+        // daemons running in a launcher.
+        digest.update((byte) (spec.isInProcess() ? 1 : 0));
+        update(digest, jvm);
+        for (String vmArg : spec.getVmArgs()) {
+            update(digest, vmArg);
+        }
+        if (spec.getCpuSet() != null) {
+            update(digest, "cpuSet=" + spec.getCpuSet());
+        }
+        digest.update((byte) 0);
+        for (File file : daemonClasspath) {
+            updateWithStamp(digest, file.toPath());
+        }
+        digest.update((byte) (includeTestClasspath ? 1 : 0));
+        // Include timestamps so that a persistent daemon is replaced when test classes change.
+        for (String entry : includeTestClasspath ? spec.getTestClasspath() : List.<String>of()) {
+            Path path = new File(entry).toPath();
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                        if (Files.isRegularFile(file)) {
+                            updateWithStamp(digest, file);
+                        }
+                    }
+                }
+            } else {
+                updateWithStamp(digest, path);
+            }
+        }
+        digest.update((byte) 0);
+        for (Map.Entry<String, Integer> port : new TreeMap<>(spec.getPorts()).entrySet()) {
+            update(digest, port.getKey());
+            update(digest, port.getValue().toString());
+        }
+        if (configuration != null) {
+            digest.update((byte) 0);
+            digest.update(configuration.toByteArray());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static void updateWithStamp(MessageDigest digest, Path file) {
+        File f = file.toFile();
+        update(digest, f.getPath());
+        update(digest, Long.toString(f.length()));
+        update(digest, Long.toString(f.lastModified()));
+    }
+
+    private void closeQuietly(LauncherProcess launcher) {
+        try {
+            launcher.close();
+        } catch (IOException ex) {
+            logger.debug("Failed to close launcher", ex);
+        }
     }
 
     @Override
-    public void stopAll() throws Throwable {
-        Throwable savedException = null;
-        for (RemoteDaemon daemon : daemons) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Stopping deamon");
+    public void stopAll(MavenSession session, Duration gracefulTimeout) throws Throwable {
+        // Daemons marked for reuse are kept running until all other projects have been built.
+        MavenProject currentProject = session.getCurrentProject();
+        boolean lastProject = true;
+        for (MavenProject project : session.getProjects()) {
+            if (!project.equals(currentProject)
+                    && session.getResult().getBuildSummary(project) == null) {
+                lastProject = false;
+                break;
             }
-            boolean success;
-            try {
-                daemon.stopDaemon();
-                success = true;
-            } catch (Throwable ex) {
-                if (savedException == null) {
-                    savedException = ex;
+        }
+        stopAll(currentProject, lastProject, gracefulTimeout);
+    }
+
+    /**
+     * Stop or release the daemons started by the given project, without affecting the daemons of
+     * other projects built concurrently.
+     *
+     * @param lastProject whether this is the last project of the session, in which case the daemons
+     *     kept for reuse are stopped as well
+     */
+    void stopAll(MavenProject currentProject, boolean lastProject, Duration gracefulTimeout)
+            throws Throwable {
+        // Let pending startups complete so that no daemon is left behind. Their failures have
+        // already been reported by the start or await goal.
+        List<CompletableFuture<?>> pendingStartups;
+        synchronized (this.daemons) {
+            pendingStartups = startups.remove(currentProject);
+        }
+        if (pendingStartups != null) {
+            for (CompletableFuture<?> startup : pendingStartups) {
+                try {
+                    startup.get();
+                } catch (ExecutionException ex) {
+                    // Ignore
                 }
-                success = false;
             }
+        }
+        List<ManagedDaemon> daemons = new ArrayList<>();
+        synchronized (this.daemons) {
+            List<ManagedDaemon> projectDaemons = this.daemons.remove(currentProject);
+            if (projectDaemons == null) {
+                projectDaemons = Collections.emptyList();
+            }
+            for (ManagedDaemon daemon : projectDaemons) {
+                if (daemon.getFingerprint() == null || lastProject) {
+                    daemons.add(daemon);
+                } else {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Keeping daemon " + daemon + " for reuse");
+                    }
+                    addIdleDaemon(daemon);
+                    idleStopTimeout = gracefulTimeout;
+                    if (shutdownHook == null) {
+                        // The session may end before the last project executes this goal, e.g.
+                        // because of a build failure.
+                        shutdownHook = new Thread(this::stopIdleDaemons, "daemon-manager-shutdown");
+                        Runtime.getRuntime().addShutdownHook(shutdownHook);
+                    }
+                }
+            }
+            if (lastProject) {
+                idleDaemons.values().forEach(daemons::addAll);
+                idleDaemons.clear();
+            }
+        }
+        stopDaemons(daemons, gracefulTimeout);
+    }
+
+    /** Keep a daemon for reuse by a subsequent project. */
+    void addIdleDaemon(ManagedDaemon daemon) {
+        synchronized (daemons) {
+            idleDaemons
+                    .computeIfAbsent(daemon.getFingerprint(), k -> new ArrayDeque<>())
+                    .add(daemon);
+        }
+    }
+
+    private void stopIdleDaemons() {
+        List<ManagedDaemon> daemons = new ArrayList<>();
+        Duration gracefulTimeout;
+        synchronized (this.daemons) {
+            idleDaemons.values().forEach(daemons::addAll);
+            idleDaemons.clear();
+            gracefulTimeout = idleStopTimeout;
+        }
+        try {
+            stopDaemons(daemons, gracefulTimeout);
+        } catch (Throwable ex) {
+            logger.error("Errors occurred while attempting to stop idle daemons", ex);
+        }
+    }
+
+    private void stopDaemons(List<ManagedDaemon> daemons, Duration gracefulTimeout)
+            throws Throwable {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (ManagedDaemon daemon : daemons) {
             if (logger.isDebugEnabled()) {
-                logger.debug("success = " + success);
+                logger.debug("Stopping daemon " + daemon);
             }
-            if (success) {
-                daemon.getProcess().waitFor();
-            } else {
-                daemon.getProcess().destroy();
+            futures.add(
+                    submit(
+                            () -> {
+                                daemon.release(gracefulTimeout);
+                                return null;
+                            }));
+        }
+        waitForAll(futures);
+    }
+
+    @Override
+    public void awaitAll(MavenSession session) throws Throwable {
+        List<CompletableFuture<?>> futures;
+        synchronized (daemons) {
+            futures = startups.remove(session.getCurrentProject());
+        }
+        if (futures != null) {
+            waitForAll(futures);
+        }
+    }
+
+    @Override
+    public Map<String, MetricsResponse> collectMetrics(MavenSession session, Duration timeout) {
+        MavenProject currentProject = session.getCurrentProject();
+        CompletableFuture<?> pendingStartups;
+        synchronized (daemons) {
+            pendingStartups =
+                    CompletableFuture.allOf(
+                            startups.getOrDefault(currentProject, Collections.emptyList())
+                                    .toArray(new CompletableFuture<?>[0]));
+        }
+        try {
+            pendingStartups.join();
+        } catch (CompletionException ex) {
+            // Ignore; daemons that failed to start are skipped below.
+        }
+        List<ManagedDaemon> projectDaemons;
+        synchronized (daemons) {
+            projectDaemons =
+                    new ArrayList<>(daemons.getOrDefault(currentProject, Collections.emptyList()));
+        }
+        Map<String, MetricsResponse> metrics = new LinkedHashMap<>();
+        for (ManagedDaemon daemon : projectDaemons) {
+            if (daemon.getPorts() == null || !daemon.isAlive()) {
+                continue;
+            }
+            try {
+                metrics.put(daemon.toString(), daemon.getMetrics(timeout));
+            } catch (Exception ex) {
+                logger.warn("Failed to collect metrics from daemon " + daemon, ex);
+            }
+        }
+        return metrics;
+    }
+
+    /** Wait for all futures to complete and rethrow the first failure, if any. */
+    private static void waitForAll(List<? extends Future<?>> futures) throws Throwable {
+        Throwable savedException = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                if (savedException == null) {
+                    savedException = ex.getCause();
+                }
             }
-            logger.info("Daemon stopped");
         }
-        // TODO: need to clear the collection because the same ServerManager instance may be used by
-        // multiple projects in a reactor build;
-        //       note that this means that the plugin is not thread safe (i.e. doesn't support
-        // parallel builds in Maven 3)
-        daemons.clear();
         if (savedException != null) {
             throw savedException;
         }
@@ -0,0 +1,173 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.codehaus.plexus.logging.Logger;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Describes a Java Flight Recorder recording made in a launcher JVM. The recording is written by
+ * the launcher when the daemon is stopped; the plugin then optionally logs a summary of it.
+ */
+final class FlightRecording {
+    /** The number of entries listed for hot methods and allocated classes in the summary. */
+    private static final int TOP_ENTRIES = 5;
+
+    private final File file;
+    private final String settings;
+    private final boolean summary;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file to write the recording to
+     * @param settings the name of a predefined JFR configuration or the path of a .jfc file
+     * @param summary whether to log a summary of the recording
+     */
+    FlightRecording(File file, String settings, boolean summary) {
+        this.file = file;
+        this.settings = settings;
+        this.summary = summary;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    String getSettings() {
+        return settings;
+    }
+
+    /** Log the location of the recording and, if requested, a summary of it. */
+    void report(Logger logger, String daemon) {
+        logger.info("Flight recording of daemon " + daemon + " written to " + file);
+        if (!summary) {
+            return;
+        }
+        try {
+            for (String line : summarize(file.toPath())) {
+                logger.info("  " + line);
+            }
+        } catch (IOException ex) {
+            logger.warn("Failed to read flight recording " + file, ex);
+        }
+    }
+
+    /** Summarize the hot methods, allocation pressure and GC pauses in a recording. */
+    static List<String> summarize(Path file) throws IOException {
+        int samples = 0;
+        Map<String, Integer> methods = new HashMap<>();
+        long allocated = 0;
+        Map<String, Long> allocations = new HashMap<>();
+        int collections = 0;
+        Duration totalPause = Duration.ZERO;
+        Duration longestPause = Duration.ZERO;
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                switch (event.getEventType().getName()) {
+                    case "jdk.ExecutionSample":
+                        RecordedStackTrace stackTrace = event.getStackTrace();
+                        if (stackTrace != null && !stackTrace.getFrames().isEmpty()) {
+                            samples++;
+                            methods.merge(format(stackTrace.getFrames().get(0)), 1, Integer::sum);
+                        }
+                        break;
+                    case "jdk.ObjectAllocationSample":
+                        long weight = event.getLong("weight");
+                        RecordedClass objectClass = event.getClass("objectClass");
+                        allocated += weight;
+                        if (objectClass != null) {
+                            allocations.merge(objectClass.getName(), weight, Long::sum);
+                        }
+                        break;
+                    case "jdk.GarbageCollection":
+                        collections++;
+                        totalPause = totalPause.plus(event.getDuration("sumOfPauses"));
+                        Duration pause = event.getDuration("longestPause");
+                        if (pause.compareTo(longestPause) > 0) {
+                            longestPause = pause;
+                        }
+                        break;
+                    default:
+                }
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(
+                String.format(
+                        Locale.ROOT,
+                        "GC: %d collections, %.1f ms total pause, %.1f ms longest pause",
+                        collections,
+                        totalPause.toNanos() / 1e6,
+                        longestPause.toNanos() / 1e6));
+        lines.add(
+                String.format(
+                        Locale.ROOT,
+                        "Allocation: %.1f MB (estimated from samples)%s",
+                        allocated / 1048576.0,
+                        allocations.isEmpty()
+                                ? ""
+                                : "; top classes: " + top(allocations, allocated)));
+        lines.add(
+                "Hot methods ("
+                        + samples
+                        + " samples)"
+                        + (methods.isEmpty() ? "" : ": " + top(methods, samples)));
+        return lines;
+    }
+
+    private static String format(RecordedFrame frame) {
+        RecordedMethod method = frame.getMethod();
+        return method.getType().getName() + "." + method.getName();
+    }
+
+    private static <T extends Number & Comparable<T>> String top(
+            Map<String, T> values, long total) {
+        return values.entrySet().stream()
+                .sorted(Map.Entry.<String, T>comparingByValue().reversed())
+                .limit(TOP_ENTRIES)
+                .map(
+                        e ->
+                                String.format(
+                                        Locale.ROOT,
+                                        "%s (%.1f%%)",
+                                        e.getKey(),
+                                        e.getValue().doubleValue() * 100 / total))
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+
+/** The memory footprint of a daemon, extracted from a metrics snapshot. */
+final class Footprint {
+    private static final Pattern NATIVE_MEMORY_TOTAL =
+            Pattern.compile("Total: reserved=(\\d+)KB, committed=(\\d+)KB");
+
+    private final long rss;
+    private final long heapUsed;
+    private final long heapCommitted;
+    private final long metaspace;
+    private final long codeCache;
+    private final long nativeMemoryCommitted;
+
+    private Footprint(
+            long rss,
+            long heapUsed,
+            long heapCommitted,
+            long metaspace,
+            long codeCache,
+            long nativeMemoryCommitted) {
+        this.rss = rss;
+        this.heapUsed = heapUsed;
+        this.heapCommitted = heapCommitted;
+        this.metaspace = metaspace;
+        this.codeCache = codeCache;
+        this.nativeMemoryCommitted = nativeMemoryCommitted;
+    }
+
+    static Footprint of(MetricsResponse metrics) {
+        Map<String, Double> gauges = metrics.getGaugesMap();
+        long nativeMemoryCommitted = -1;
+        Matcher matcher = NATIVE_MEMORY_TOTAL.matcher(metrics.getNativeMemorySummary());
+        if (matcher.find()) {
+            nativeMemoryCommitted = Long.parseLong(matcher.group(2)) * 1024;
+        }
+        return new Footprint(
+                gauges.getOrDefault("jvm.rss", -1d).longValue(),
+                gauges.getOrDefault("jvm.heap.used", 0d).longValue(),
+                gauges.getOrDefault("jvm.heap.committed", 0d).longValue(),
+                gauges.getOrDefault("jvm.metaspace.used", 0d).longValue(),
+                gauges.getOrDefault("jvm.codecache.used", 0d).longValue(),
+                nativeMemoryCommitted);
+    }
+
+    /**
+     * Get the total footprint. This is the resident set size if it is known, and otherwise an
+     * estimate based on the memory pools.
+     */
+    long getTotal() {
+        if (rss != -1) {
+            return rss;
+        }
+        return nativeMemoryCommitted != -1
+                ? nativeMemoryCommitted
+                : heapCommitted + metaspace + codeCache;
+    }
+
+    private static String mb(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MB", bytes / 1048576.0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(rss == -1 ? "RSS unknown" : "RSS " + mb(rss))
+                .append(", heap ")
+                .append(mb(heapUsed))
+                .append(" used / ")
+                .append(mb(heapCommitted))
+                .append(" committed, metaspace ")
+                .append(mb(metaspace))
+                .append(", code cache ")
+                .append(mb(codeCache));
+        if (nativeMemoryCommitted != -1) {
+            buffer.append(", native memory ")
+                    .append(mb(nativeMemoryCommitted))
+                    .append(" committed");
+        }
+        return buffer.toString();
+    }
+}
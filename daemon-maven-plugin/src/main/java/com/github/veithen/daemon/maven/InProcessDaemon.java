@@ -0,0 +1,236 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.logging.Logger;
+
+import com.github.veithen.daemon.Daemon;
+import com.github.veithen.daemon.DaemonContext;
+import com.github.veithen.daemon.launcher.ClassPath;
+import com.github.veithen.daemon.launcher.DaemonContextImpl;
+import com.github.veithen.daemon.launcher.MetricsRegistry;
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Message;
+
+/**
+ * A daemon running in the Maven JVM. The daemon is loaded in an isolated class loader that only
+ * shares the daemon API and the protobuf runtime with the plugin. This avoids the cost of forking a
+ * JVM, but JVM arguments have no effect and the daemon shares the heap with Maven. For the same
+ * reason, the JVM data included in the metrics is that of the Maven JVM.
+ */
+final class InProcessDaemon implements ManagedDaemon {
+    private final Logger logger;
+    private final String name;
+    private final URLClassLoader classLoader;
+    private final Daemon<?> daemon;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private volatile Map<String, Integer> allocatedPorts;
+    private volatile boolean running;
+    private String fingerprint;
+    private boolean testClasspathUsed;
+
+    private InProcessDaemon(
+            Logger logger, String name, URLClassLoader classLoader, Daemon<?> daemon) {
+        this.logger = logger;
+        this.name = name;
+        this.classLoader = classLoader;
+        this.daemon = daemon;
+    }
+
+    /** Create a class loader for the given daemon classpath and look up the daemon. */
+    static InProcessDaemon load(Logger logger, String name, List<File> daemonClasspath)
+            throws Exception {
+        URLClassLoader classLoader =
+                new URLClassLoader(
+                        name,
+                        ClassPath.toURLs(daemonClasspath.stream().map(File::toString).toList()),
+                        new SharedClassLoader(InProcessDaemon.class.getClassLoader()));
+        try {
+            // Daemon.class can only be used as a raw type.
+            Iterator<?> it = ServiceLoader.load(Daemon.class, classLoader).iterator();
+            if (!it.hasNext()) {
+                throw new IllegalStateException("Daemon class not found");
+            }
+            Daemon<?> daemon = (Daemon<?>) it.next();
+            if (it.hasNext()) {
+                throw new IllegalStateException("More than one daemon class found");
+            }
+            return new InProcessDaemon(logger, name, classLoader, daemon);
+        } catch (Exception ex) {
+            classLoader.close();
+            throw ex;
+        }
+    }
+
+    /** Run the given action with the daemon class loader as context class loader. */
+    private <T> T withContextClassLoader(Callable<T> action) throws Exception {
+        Thread thread = Thread.currentThread();
+        ClassLoader savedContextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return action.call();
+        } finally {
+            thread.setContextClassLoader(savedContextClassLoader);
+        }
+    }
+
+    /** Get the descriptor for the daemon's configuration message. */
+    Descriptor getDescriptor() throws Exception {
+        return (Descriptor) daemon.getConfigurationType().getMethod("getDescriptor").invoke(null);
+    }
+
+    private static <T extends Message> void initDaemon(
+            Daemon<T> daemon, Message configuration, DaemonContext daemonContext) throws Exception {
+        Class<T> configurationType = daemon.getConfigurationType();
+        T defaultInstance =
+                configurationType.cast(
+                        configurationType.getMethod("getDefaultInstance").invoke(null));
+        // The configuration is a DynamicMessage with the same descriptor; merge it into the
+        // generated message type without serializing it.
+        daemon.init(
+                configurationType.cast(
+                        defaultInstance.toBuilder().mergeFrom(configuration).build()),
+                daemonContext);
+    }
+
+    /**
+     * Initialize and start the daemon.
+     *
+     * @param configuration the configuration, built using the descriptor returned by {@link
+     *     #getDescriptor()}
+     * @param testClasspath the test classpath
+     * @param ports the requested port numbers
+     * @return the ports allocated by the daemon
+     */
+    Map<String, Integer> start(
+            Message configuration, List<String> testClasspath, Map<String, Integer> ports)
+            throws Exception {
+        DaemonContextImpl daemonContext =
+                new DaemonContextImpl(ClassPath.toURLs(testClasspath), ports, metrics);
+        allocatedPorts =
+                withContextClassLoader(
+                        () -> {
+                            initDaemon(daemon, configuration, daemonContext);
+                            return daemon.start();
+                        });
+        testClasspathUsed = daemonContext.isTestClasspathUsed();
+        running = true;
+        return allocatedPorts;
+    }
+
+    @Override
+    public boolean isTestClasspathUsed() {
+        return testClasspathUsed;
+    }
+
+    @Override
+    public Map<String, Integer> getPorts() {
+        return allocatedPorts;
+    }
+
+    @Override
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return running;
+    }
+
+    @Override
+    public MetricsResponse getMetrics(Duration timeout) {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Stop and destroy the daemon and close its class loader. Since the daemon can't be killed, it
+     * is abandoned if it doesn't stop within the given timeout.
+     */
+    @Override
+    public void release(Duration gracefulTimeout) throws Exception {
+        long start = System.nanoTime();
+        Exception[] failure = new Exception[1];
+        Thread thread =
+                new Thread(
+                        () -> {
+                            try {
+                                withContextClassLoader(
+                                        () -> {
+                                            daemon.stop();
+                                            daemon.destroy();
+                                            return null;
+                                        });
+                            } catch (Exception ex) {
+                                failure[0] = ex;
+                            }
+                        },
+                        "daemon-stop-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(gracefulTimeout.toMillis());
+        running = false;
+        if (thread.isAlive()) {
+            logger.warn(
+                    "Daemon "
+                            + this
+                            + " didn't stop within "
+                            + gracefulTimeout.toMillis()
+                            + " ms; abandoning it");
+            return;
+        }
+        try {
+            classLoader.close();
+        } catch (IOException ex) {
+            logger.debug("Failed to close class loader", ex);
+        }
+        logger.info(
+                "Daemon "
+                        + this
+                        + " stopped after "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                        + " ms");
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (in-process)";
+    }
+}
@@ -0,0 +1,160 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Describes how to spawn a launcher JVM. Two launchers created from equal commands are
+ * interchangeable until they receive their {@code INIT} message.
+ */
+final class LauncherCommand {
+    private final String jvm;
+    private final List<String> vmArgs;
+    private final File workDir;
+    private final List<File> launcherClasspath;
+    private final ClassDataArchive classDataArchive;
+    private final File outputFile;
+    private final String cpuSet;
+    private final OutputSettings outputSettings;
+
+    LauncherCommand(
+            String jvm,
+            String[] vmArgs,
+            File workDir,
+            List<File> launcherClasspath,
+            ClassDataArchive classDataArchive,
+            File outputFile,
+            String cpuSet,
+            OutputSettings outputSettings) {
+        this.jvm = jvm;
+        this.vmArgs = Collections.unmodifiableList(Arrays.asList(vmArgs.clone()));
+        this.workDir = workDir;
+        this.launcherClasspath = Collections.unmodifiableList(new ArrayList<>(launcherClasspath));
+        this.classDataArchive = classDataArchive;
+        this.outputFile = outputFile;
+        this.cpuSet = cpuSet;
+        this.outputSettings = outputSettings;
+    }
+
+    String[] getVmArgs() {
+        return vmArgs.toArray(new String[0]);
+    }
+
+    File getWorkDir() {
+        return workDir;
+    }
+
+    ClassDataArchive getClassDataArchive() {
+        return classDataArchive;
+    }
+
+    /**
+     * Get the file to redirect the output of the launcher to.
+     *
+     * @return the output file, or {@code null} if the output should be copied to the Maven log
+     */
+    File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Get the settings for writing the output of the launcher to a new log file. This is only used
+     * if there is no {@linkplain #getOutputFile() output file}.
+     *
+     * @return the settings, or {@code null} if the output should be copied to the Maven log
+     */
+    OutputSettings getOutputSettings() {
+        return outputSettings;
+    }
+
+    /**
+     * Build the command line for a new launcher.
+     *
+     * @param controlPort the port the launcher should connect to
+     * @param archiveOutput the file to write the class data sharing archive to if it doesn't exist
+     *     yet; only used if the command has a {@link ClassDataArchive}
+     */
+    List<String> toCommandLine(int controlPort, Path archiveOutput) {
+        List<String> cmdline = new ArrayList<>();
+        if (cpuSet != null) {
+            // The affinity is inherited by all threads of the JVM.
+            cmdline.add("taskset");
+            cmdline.add("-c");
+            cmdline.add(cpuSet);
+        }
+        cmdline.add(jvm);
+        cmdline.add("-cp");
+        cmdline.add(StringUtils.join(launcherClasspath.iterator(), File.pathSeparator));
+        if (classDataArchive != null) {
+            cmdline.addAll(classDataArchive.getVmArgs(archiveOutput));
+        }
+        cmdline.addAll(vmArgs);
+        if (outputFile == null && outputSettings != null) {
+            // The log file may be mirrored to the Maven log, which needs to know its encoding. Java
+            // 19 and later use stdout.encoding; older versions use sun.stdout.encoding.
+            String charset = OutputSettings.CHARSET.name();
+            cmdline.add("-Dstdout.encoding=" + charset);
+            cmdline.add("-Dstderr.encoding=" + charset);
+            cmdline.add("-Dsun.stdout.encoding=" + charset);
+            cmdline.add("-Dsun.stderr.encoding=" + charset);
+        }
+        cmdline.add("com.github.veithen.daemon.launcher.Launcher");
+        cmdline.add(String.valueOf(controlPort));
+        return cmdline;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof LauncherCommand)) {
+            return false;
+        }
+        LauncherCommand other = (LauncherCommand) obj;
+        return jvm.equals(other.jvm)
+                && vmArgs.equals(other.vmArgs)
+                && workDir.equals(other.workDir)
+                && launcherClasspath.equals(other.launcherClasspath)
+                && Objects.equals(classDataArchive, other.classDataArchive)
+                && Objects.equals(outputFile, other.outputFile)
+                && Objects.equals(cpuSet, other.cpuSet)
+                && Objects.equals(outputSettings, other.outputSettings);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+                jvm,
+                vmArgs,
+                workDir,
+                launcherClasspath,
+                classDataArchive,
+                outputFile,
+                cpuSet,
+                outputSettings);
+    }
+}
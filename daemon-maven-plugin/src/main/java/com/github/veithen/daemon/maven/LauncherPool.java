@@ -0,0 +1,217 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Keeps a number of idle launcher JVMs ready so that daemons can be started without waiting for a
+ * new JVM to be spawned. Idle launchers are grouped by {@link LauncherCommand} because only
+ * launchers spawned with the same command are interchangeable.
+ *
+ * <p>Idle launchers spawned for daemons subject to admission control count against the budget of
+ * the {@link AdmissionScheduler}: the pool is only refilled if the capacity is available without
+ * queueing, and the capacity is accounted to the owner of the daemon that takes the launcher.
+ */
+final class LauncherPool {
+    /** The time to wait for an idle launcher to terminate after its connection has been closed. */
+    private static final Duration EXIT_TIMEOUT = Duration.ofSeconds(10);
+
+    /** An idle launcher together with the capacity reserved for it. */
+    private static final class IdleLauncher {
+        private final Future<LauncherProcess> launcher;
+        private final AdmissionScheduler.Admission admission;
+
+        IdleLauncher(Future<LauncherProcess> launcher, AdmissionScheduler.Admission admission) {
+            this.launcher = launcher;
+            this.admission = admission;
+        }
+    }
+
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final LauncherSupervisor supervisor;
+    private final AdmissionScheduler admissionScheduler;
+    private final BiConsumer<ProcessHandle, AdmissionScheduler.Admission> tracker;
+    private final Map<LauncherCommand, Deque<IdleLauncher>> idleLaunchers = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param tracker invoked for every launcher spawned with reserved capacity; it is responsible
+     *     for releasing the capacity when the launcher terminates
+     */
+    LauncherPool(
+            Logger logger,
+            ExecutorService executor,
+            LauncherSupervisor supervisor,
+            AdmissionScheduler admissionScheduler,
+            BiConsumer<ProcessHandle, AdmissionScheduler.Admission> tracker) {
+        this.logger = logger;
+        this.executor = executor;
+        this.supervisor = supervisor;
+        this.admissionScheduler = admissionScheduler;
+        this.tracker = tracker;
+    }
+
+    /**
+     * Take an idle launcher for the given command from the pool.
+     *
+     * @param owner the owner to account the capacity reserved for the launcher to, or {@code null}
+     *     if the daemon isn't subject to admission control
+     * @return the launcher, or {@code null} if no suitable idle launcher is available
+     */
+    LauncherProcess poll(LauncherCommand command, Object owner) throws IOException {
+        IdleLauncher idle;
+        synchronized (this) {
+            Deque<IdleLauncher> queue = idleLaunchers.get(command);
+            idle = queue == null ? null : queue.poll();
+        }
+        if (idle == null) {
+            return null;
+        }
+        LauncherProcess launcher = get(idle.launcher);
+        if (launcher == null) {
+            return null;
+        }
+        // A launcher spawned without reserved capacity can't be used by a daemon subject to
+        // admission control.
+        if (launcher.getProcess().isAlive() && (owner == null || idle.admission != null)) {
+            if (idle.admission != null) {
+                if (owner == null) {
+                    idle.admission.release();
+                } else {
+                    idle.admission.transfer(owner);
+                }
+            }
+            logger.debug("Using launcher from pool");
+            return launcher;
+        }
+        launcher.close();
+        launcher.installClassDataArchive();
+        return null;
+    }
+
+    /**
+     * Spawn launchers for the given command in the background until the pool contains <code>
+     * poolSize</code> idle launchers for that command.
+     *
+     * @param admissionControl whether the launchers are for daemons subject to admission control;
+     *     if so, the pool is only refilled as far as the capacity is available without queueing
+     */
+    synchronized void refill(LauncherCommand command, int poolSize, boolean admissionControl) {
+        Deque<IdleLauncher> queue = idleLaunchers.computeIfAbsent(command, k -> new ArrayDeque<>());
+        while (queue.size() < poolSize) {
+            AdmissionScheduler.Admission admission = null;
+            if (admissionControl) {
+                admission = admissionScheduler.tryAdmit(this, command.getVmArgs());
+                if (admission == null) {
+                    logger.debug("Not enough capacity to refill launcher pool");
+                    return;
+                }
+            }
+            AdmissionScheduler.Admission reserved = admission;
+            queue.add(new IdleLauncher(executor.submit(() -> spawn(command, reserved)), admission));
+        }
+    }
+
+    private LauncherProcess spawn(LauncherCommand command, AdmissionScheduler.Admission admission)
+            throws IOException {
+        LauncherProcess launcher;
+        try {
+            launcher = LauncherProcess.start(logger, supervisor, command);
+        } catch (IOException | RuntimeException ex) {
+            if (admission != null) {
+                admission.release();
+            }
+            throw ex;
+        }
+        if (admission != null) {
+            tracker.accept(launcher.getProcess(), admission);
+        }
+        return launcher;
+    }
+
+    /**
+     * Terminate all idle launchers, which releases the capacity reserved for them. The pool may be
+     * refilled afterwards.
+     */
+    void shutdown() {
+        List<Future<LauncherProcess>> futures = new ArrayList<>();
+        synchronized (this) {
+            idleLaunchers
+                    .values()
+                    .forEach(queue -> queue.forEach(idle -> futures.add(idle.launcher)));
+            idleLaunchers.clear();
+        }
+        List<LauncherProcess> launchers = new ArrayList<>();
+        for (Future<LauncherProcess> future : futures) {
+            LauncherProcess launcher = get(future);
+            if (launcher != null) {
+                try {
+                    launcher.close();
+                    launchers.add(launcher);
+                } catch (IOException ex) {
+                    logger.debug("Failed to close idle launcher", ex);
+                }
+            }
+        }
+        // The launchers write a class data archive when they exit; wait for them so that the
+        // temporary files can be removed before the Maven JVM exits.
+        for (LauncherProcess launcher : launchers) {
+            try {
+                launcher.getProcess().onExit().get(EXIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                launcher.installClassDataArchive();
+            } catch (ExecutionException | TimeoutException | IOException ex) {
+                logger.debug("Failed to clean up idle launcher", ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private LauncherProcess get(Future<LauncherProcess> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            logger.debug("Failed to spawn launcher", ex.getCause());
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.codehaus.plexus.logging.Logger;
+
+import com.github.veithen.daemon.launcher.proto.DaemonRequest;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse.ResponseCase;
+import com.github.veithen.daemon.launcher.proto.LogBatch;
+import com.github.veithen.daemon.launcher.proto.MessageReader;
+import com.github.veithen.daemon.launcher.proto.MessageWriter;
+
+/**
+ * A launcher JVM with an established control connection. The launcher is waiting for its {@code
+ * INIT} message and not yet bound to any particular daemon.
+ */
+final class LauncherProcess {
+    private final ProcessHandle process;
+
+    /** The launcher process if it has been started by this JVM, {@code null} otherwise. */
+    private final Process child;
+
+    private final Socket controlSocket;
+    private final MessageWriter<DaemonRequest> controlWriter;
+    private final MessageReader<DaemonResponse, ResponseCase> controlReader;
+    private volatile boolean used;
+    private ClassDataArchive archive;
+
+    /**
+     * The file the launcher JVM writes the class data archive to when it terminates, or {@code
+     * null} if it doesn't create an archive or the archive has already been installed.
+     */
+    private Path archiveOutput;
+
+    private long readTimeout;
+
+    /**
+     * The responses (or the {@link IOException} that terminated the reader) received by the
+     * background reader, or {@code null} if {@link #startReader(Consumer, Duration)} hasn't been
+     * called.
+     */
+    private volatile BlockingQueue<Object> responses;
+
+    /**
+     * The types of the responses that are still expected for requests the caller has given up on,
+     * in the order of the requests. These responses are skipped by {@link #read(ResponseCase)}.
+     */
+    private final Queue<ResponseCase> abandonedResponses = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The time in milliseconds after which the launcher is considered hung if it hasn't sent any
+     * message, or 0 if heartbeats are disabled.
+     */
+    private long heartbeatTimeout;
+
+    /** The {@link System#nanoTime()} at which the last message has been received. */
+    private volatile long lastMessage;
+
+    private LauncherProcess(ProcessHandle process, Process child, Socket controlSocket)
+            throws IOException {
+        this.process = process;
+        this.child = child;
+        this.controlSocket = controlSocket;
+        controlWriter = new MessageWriter<DaemonRequest>(controlSocket.getOutputStream());
+        controlReader =
+                new MessageReader<>(
+                        controlSocket.getInputStream(),
+                        DaemonResponse.parser(),
+                        DaemonResponse::getResponseCase);
+    }
+
+    static LauncherProcess start(
+            Logger logger, LauncherSupervisor supervisor, LauncherCommand command)
+            throws IOException {
+        Process process;
+        Socket controlSocket;
+        ClassDataArchive archive = command.getClassDataArchive();
+        Path archiveOutput = archive != null && !archive.exists() ? archive.newOutputFile() : null;
+        try (ServerSocketChannel controlServerChannel = ServerSocketChannel.open()) {
+            controlServerChannel.bind(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+            int controlPort = controlServerChannel.socket().getLocalPort();
+            List<String> cmdline = command.toCommandLine(controlPort, archiveOutput);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Starting process with command line: " + cmdline);
+            }
+            ProcessBuilder processBuilder =
+                    new ProcessBuilder(cmdline).directory(command.getWorkDir());
+            OutputSettings outputSettings =
+                    command.getOutputFile() == null ? command.getOutputSettings() : null;
+            File logFile = outputSettings == null ? null : outputSettings.newLogFile();
+            File outputFile = logFile != null ? logFile : command.getOutputFile();
+            if (outputFile != null) {
+                // The output is written by the launcher itself, without going through this JVM.
+                processBuilder.redirectErrorStream(true);
+                processBuilder.redirectOutput(Redirect.appendTo(outputFile));
+            }
+            process = processBuilder.start();
+            if (logFile != null) {
+                process.onExit().thenRun(() -> OutputSettings.release(logFile));
+                if (outputSettings.getConsoleFilter() != null) {
+                    supervisor.mirror(logFile, outputSettings, process);
+                }
+            }
+            if (outputFile == null) {
+                new Thread(new StreamPump(process.getInputStream(), logger, "[STDOUT] ")).start();
+                new Thread(new StreamPump(process.getErrorStream(), logger, "[STDERR] ")).start();
+            }
+            logger.debug("Waiting for control connection on port " + controlPort);
+            try {
+                controlSocket = supervisor.accept(controlServerChannel, process).get().socket();
+            } catch (InterruptedException ex) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else {
+                    throw new IOException(cause);
+                }
+            }
+        }
+        logger.debug("Control connection established");
+        LauncherProcess launcher = new LauncherProcess(process.toHandle(), process, controlSocket);
+        if (archiveOutput != null) {
+            launcher.archive = archive;
+            launcher.archiveOutput = archiveOutput;
+        }
+        return launcher;
+    }
+
+    /**
+     * Connect to a persistent launcher started by a previous build. The caller is expected to send
+     * an {@code ATTACH} message.
+     *
+     * @param process the launcher process
+     * @param attachPort the port on which the launcher accepts new control connections
+     * @param connectTimeout the maximum time to wait for the connection to be established
+     */
+    static LauncherProcess attach(ProcessHandle process, int attachPort, Duration connectTimeout)
+            throws IOException {
+        Socket controlSocket = new Socket();
+        try {
+            controlSocket.connect(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), attachPort),
+                    (int) connectTimeout.toMillis());
+            LauncherProcess launcher = new LauncherProcess(process, null, controlSocket);
+            launcher.markUsed();
+            return launcher;
+        } catch (IOException ex) {
+            controlSocket.close();
+            throw ex;
+        }
+    }
+
+    /** Mark the launcher as used, i.e. bound to a daemon. */
+    void markUsed() {
+        used = true;
+    }
+
+    /**
+     * Install the class data archive written by the launcher JVM, or discard it if the launcher has
+     * never been bound to a daemon, since the archive then lacks the daemon classes. This must be
+     * called after the process has terminated, so that the archive is complete, and before the
+     * Maven JVM exits, so that no temporary file is left behind. It does nothing if the launcher
+     * didn't create an archive.
+     */
+    synchronized void installClassDataArchive() throws IOException {
+        if (archiveOutput == null) {
+            return;
+        }
+        Path output = archiveOutput;
+        archiveOutput = null;
+        if (used) {
+            archive.install(output);
+        } else {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    ProcessHandle getProcess() {
+        return process;
+    }
+
+    /**
+     * Describe how the process has terminated.
+     *
+     * @return the exit code, if known
+     */
+    String getExitStatus() {
+        return child == null ? "unknown exit code" : "exit code " + child.exitValue();
+    }
+
+    MessageWriter<DaemonRequest> getControlWriter() {
+        return controlWriter;
+    }
+
+    /**
+     * Read a response from the launcher.
+     *
+     * @throws SocketTimeoutException if the {@linkplain #setReadTimeout(Duration) read timeout}
+     *     expires
+     * @throws HeartbeatLostException if heartbeats are enabled and the launcher stopped sending
+     *     them
+     */
+    DaemonResponse read(ResponseCase expectedCase) throws IOException {
+        if (responses == null) {
+            try {
+                return controlReader.read(expectedCase);
+            } catch (IOException ex) {
+                // Protobuf wraps the exception triggered by the socket timeout.
+                for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+                    if (cause instanceof SocketTimeoutException) {
+                        throw (SocketTimeoutException) cause;
+                    }
+                }
+                throw ex;
+            }
+        }
+        long start = System.nanoTime();
+        Object response;
+        while ((response = poll(start)) instanceof DaemonResponse
+                && ((DaemonResponse) response).getResponseCase() == abandonedResponses.peek()) {
+            // The late response to an abandoned request.
+            abandonedResponses.remove();
+        }
+        if (response instanceof IOException) {
+            // Subsequent reads fail in the same way.
+            responses.add(response);
+            throw new IOException(((IOException) response).getMessage(), (IOException) response);
+        }
+        DaemonResponse message = (DaemonResponse) response;
+        if (message.getResponseCase() != expectedCase) {
+            throw new IOException("Received unexpected message type " + message.getResponseCase());
+        }
+        return message;
+    }
+
+    /**
+     * Get the next response or exception from the background reader.
+     *
+     * @param start the {@link System#nanoTime()} at which the read timeout started
+     */
+    private Object poll(long start) throws IOException {
+        Object response;
+        try {
+            do {
+                long timeout =
+                        readTimeout == 0
+                                ? Long.MAX_VALUE
+                                : readTimeout
+                                        - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (timeout <= 0) {
+                    throw new SocketTimeoutException();
+                }
+                if (heartbeatTimeout != 0) {
+                    long silence = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastMessage);
+                    if (silence >= heartbeatTimeout) {
+                        throw new HeartbeatLostException(silence);
+                    }
+                    timeout = Math.min(timeout, heartbeatTimeout - silence);
+                }
+                response = responses.poll(timeout, TimeUnit.MILLISECONDS);
+            } while (response == null);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        return response;
+    }
+
+    /**
+     * Start reading the control connection in a background thread. This is required once the
+     * launcher may send {@code LOG} messages, since these may arrive at any time. Other responses
+     * are still returned by {@link #read(ResponseCase)}. This is also required to receive {@code
+     * HEARTBEAT} messages.
+     *
+     * @param logHandler the handler for {@code LOG} messages
+     * @param heartbeatTimeout the time without any message after which {@link #read(ResponseCase)}
+     *     considers the launcher hung, or zero if heartbeats are disabled
+     */
+    void startReader(Consumer<LogBatch> logHandler, Duration heartbeatTimeout) {
+        this.heartbeatTimeout = heartbeatTimeout.toMillis();
+        lastMessage = System.nanoTime();
+        responses = new LinkedBlockingQueue<>();
+        Thread thread =
+                new Thread(
+                        () -> {
+                            try {
+                                DaemonResponse message;
+                                while ((message = controlReader.readNext()) != null) {
+                                    lastMessage = System.nanoTime();
+                                    if (message.getResponseCase() == ResponseCase.LOG) {
+                                        logHandler.accept(message.getLog());
+                                    } else if (message.getResponseCase()
+                                            != ResponseCase.HEARTBEAT) {
+                                        responses.add(message);
+                                    }
+                                }
+                                responses.add(new IOException("Unexpected end of stream"));
+                            } catch (IOException ex) {
+                                responses.add(ex);
+                            }
+                        },
+                        "daemon-reader-" + process.pid());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    boolean isReaderStarted() {
+        return responses != null;
+    }
+
+    /**
+     * Give up on a request for which {@link #read(ResponseCase)} has timed out, so that its
+     * response is skipped if it arrives later. This requires the {@linkplain #startReader(Consumer,
+     * Duration) background reader}; without it, a timeout leaves the control connection unusable.
+     *
+     * @param responseCase the type of the response to skip
+     */
+    void abandonResponse(ResponseCase responseCase) {
+        abandonedResponses.add(responseCase);
+    }
+
+    /** Set the maximum time to wait for a message from the launcher. */
+    void setReadTimeout(Duration timeout) throws IOException {
+        readTimeout = Math.min(timeout.toMillis(), Integer.MAX_VALUE);
+        // The background reader must not be interrupted by the timeout; it only applies to the
+        // queue.
+        if (responses == null) {
+            controlSocket.setSoTimeout((int) readTimeout);
+        }
+    }
+
+    /**
+     * Close the control connection. If the launcher hasn't received its {@code INIT} message yet,
+     * this causes it to terminate. A persistent launcher keeps running and waits for the next build
+     * to attach.
+     */
+    void close() throws IOException {
+        controlSocket.close();
+    }
+}
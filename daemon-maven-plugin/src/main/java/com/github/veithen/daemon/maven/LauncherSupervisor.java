@@ -0,0 +1,253 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Waits for control connections from newly spawned launchers. A single selector thread serves all
+ * launchers, and the termination of a launcher is detected through {@link Process#onExit()}, so
+ * that both events are handled as soon as they occur, without polling. The same thread also mirrors
+ * selected lines of launcher log files to the Maven log.
+ */
+final class LauncherSupervisor implements Closeable {
+    /** The interval at which log files are checked for new output. */
+    private static final long TAIL_INTERVAL_MILLIS = 200;
+
+    /** Follows a log file written by a launcher and mirrors selected lines to the Maven log. */
+    private final class Tail {
+        private final File file;
+        private final FileChannel channel;
+        private final Process process;
+        private final String prefix;
+        private final Pattern filter;
+        private final int rateLimit;
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private long windowStart = System.nanoTime();
+        private int windowCount;
+        private int suppressed;
+
+        Tail(File file, OutputSettings settings, Process process) throws IOException {
+            this.file = file;
+            channel = FileChannel.open(file.toPath());
+            this.process = process;
+            prefix = "[" + settings.getName() + "] ";
+            filter = settings.getConsoleFilter();
+            rateLimit = settings.getConsoleRateLimit();
+        }
+
+        /**
+         * Process the output written since the last invocation.
+         *
+         * @return {@code false} if the launcher has terminated and all of its output has been
+         *     processed
+         */
+        boolean poll() {
+            // Check this first so that output written just before termination isn't lost.
+            boolean terminated = !process.isAlive();
+            try {
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        byte b = buffer.get();
+                        if (b == '\n') {
+                            emitLine();
+                        } else if (b != '\r') {
+                            line.write(b);
+                        }
+                    }
+                    buffer.clear();
+                }
+            } catch (IOException ex) {
+                logger.debug("Failed to read " + file, ex);
+                terminated = true;
+            }
+            if (System.nanoTime() - windowStart >= 1_000_000_000L) {
+                reportSuppressed();
+            }
+            if (terminated) {
+                if (line.size() > 0) {
+                    emitLine();
+                }
+                reportSuppressed();
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    // Ignore
+                }
+            }
+            return !terminated;
+        }
+
+        private void emitLine() {
+            String s = new String(line.toByteArray(), OutputSettings.CHARSET);
+            line.reset();
+            if (!filter.matcher(s).find()) {
+                return;
+            }
+            if (System.nanoTime() - windowStart >= 1_000_000_000L) {
+                reportSuppressed();
+            }
+            if (windowCount < rateLimit) {
+                logger.info(prefix + s);
+                windowCount++;
+            } else {
+                suppressed++;
+            }
+        }
+
+        private void reportSuppressed() {
+            if (suppressed > 0) {
+                logger.info(prefix + "(" + suppressed + " lines suppressed; see " + file + ")");
+                suppressed = 0;
+            }
+            windowStart = System.nanoTime();
+            windowCount = 0;
+        }
+    }
+
+    private final Logger logger;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    /** The log files being mirrored. Only accessed by the supervisor thread. */
+    private final List<Tail> tails = new ArrayList<>();
+
+    LauncherSupervisor(Logger logger) throws IOException {
+        this.logger = logger;
+        selector = Selector.open();
+        thread = new Thread(this::run, "daemon-supervisor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Wait for the control connection of a launcher.
+     *
+     * @param serverChannel the channel the launcher connects to; the caller remains responsible for
+     *     closing it
+     * @param process the launcher process
+     * @return a future that completes with the (blocking) control channel, or fails if the process
+     *     terminates before it connects
+     */
+    CompletableFuture<SocketChannel> accept(ServerSocketChannel serverChannel, Process process)
+            throws IOException {
+        CompletableFuture<SocketChannel> future = new CompletableFuture<>();
+        serverChannel.configureBlocking(false);
+        execute(
+                () -> {
+                    try {
+                        serverChannel.register(selector, SelectionKey.OP_ACCEPT, future);
+                    } catch (ClosedChannelException ex) {
+                        future.completeExceptionally(ex);
+                    }
+                });
+        process.onExit()
+                .thenRun(
+                        () ->
+                                future.completeExceptionally(
+                                        new IllegalStateException(
+                                                "Process terminated prematurely with exit code "
+                                                        + process.exitValue())));
+        return future;
+    }
+
+    /**
+     * Mirror the lines of a launcher log file that match the console filter to the Maven log until
+     * the launcher terminates.
+     */
+    void mirror(File logFile, OutputSettings settings, Process process) throws IOException {
+        Tail tail = new Tail(logFile, settings, process);
+        execute(() -> tails.add(tail));
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                selector.select(tails.isEmpty() ? 0 : TAIL_INTERVAL_MILLIS);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+                tails.removeIf(tail -> !tail.poll());
+            }
+        } catch (ClosedSelectorException ex) {
+            // The supervisor has been closed.
+        } catch (IOException ex) {
+            logger.error("Launcher supervisor failed", ex);
+        }
+    }
+
+    private void accept(SelectionKey key) {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<SocketChannel> future =
+                (CompletableFuture<SocketChannel>) key.attachment();
+        try {
+            SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+            if (channel == null) {
+                return;
+            }
+            key.cancel();
+            if (!future.complete(channel)) {
+                channel.close();
+            }
+        } catch (IOException ex) {
+            key.cancel();
+            future.completeExceptionally(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        selector.close();
+    }
+}
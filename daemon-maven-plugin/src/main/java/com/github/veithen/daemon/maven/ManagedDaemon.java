@@ -0,0 +1,69 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.time.Duration;
+import java.util.Map;
+
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+
+/** A daemon started by {@link DefaultDaemonManager}, either in a launcher JVM or in process. */
+interface ManagedDaemon {
+    /**
+     * Get the ports allocated by the daemon.
+     *
+     * @return the port numbers, or {@code null} if the daemon hasn't been started yet
+     */
+    Map<String, Integer> getPorts();
+
+    /**
+     * Get the fingerprint of the daemon, i.e. a hash of all inputs that determine its behavior.
+     *
+     * @return the fingerprint, or {@code null} if the daemon must not be reused
+     */
+    String getFingerprint();
+
+    void setFingerprint(String fingerprint);
+
+    /**
+     * Indicates whether the daemon has accessed the test classpath while it was initialized and
+     * started. If it didn't, the test classpath is not part of its fingerprint, so that it can be
+     * reused by projects with a different test classpath.
+     */
+    boolean isTestClasspathUsed();
+
+    /** Check whether the daemon is still running. */
+    boolean isAlive();
+
+    /**
+     * Get a snapshot of the metrics published by the daemon and of the JVM it runs in.
+     *
+     * @param timeout the time to wait for the daemon to respond
+     */
+    MetricsResponse getMetrics(Duration timeout) throws Exception;
+
+    /**
+     * Release the daemon at the end of a project. This stops the daemon, unless it is meant to
+     * outlive the build.
+     *
+     * @param gracefulTimeout the time the daemon is given to shut down
+     */
+    void release(Duration gracefulTimeout) throws Exception;
+}
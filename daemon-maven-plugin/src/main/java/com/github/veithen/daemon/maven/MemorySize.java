@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+/** Parses memory sizes in the format used by JVM options and by the plugin parameters. */
+final class MemorySize {
+    private MemorySize() {}
+
+    /**
+     * Parse a memory size as accepted by the JVM, e.g. {@code 512m} or {@code 2G}.
+     *
+     * @return the size in bytes, or -1 if the value is invalid
+     */
+    static long parse(String value) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+        int shift;
+        switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+            case 'k':
+                shift = 10;
+                break;
+            case 'm':
+                shift = 20;
+                break;
+            case 'g':
+                shift = 30;
+                break;
+            case 't':
+                shift = 40;
+                break;
+            default:
+                shift = 0;
+        }
+        try {
+            return Long.parseLong(shift == 0 ? value : value.substring(0, value.length() - 1))
+                    << shift;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Describes how the output of a launcher is captured when it is written to a log file. The file is
+ * written directly by the launcher process; selected lines may be mirrored to the Maven log by the
+ * {@link LauncherSupervisor}.
+ */
+final class OutputSettings {
+    /**
+     * The encoding of the log files. The launcher is instructed to use it for its standard output
+     * and error streams so that the mirrored lines don't depend on its default charset.
+     */
+    static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    /** Log files of launchers that are still running. They are exempt from retention. */
+    private static final Set<Path> activeLogFiles = ConcurrentHashMap.newKeySet();
+
+    private final File directory;
+    private final Pattern logFilePattern;
+    private final String name;
+    private final int retention;
+    private final String consoleFilter;
+    private final int consoleRateLimit;
+
+    /**
+     * Constructor.
+     *
+     * @param directory the directory to write log files to
+     * @param name the name of the daemon, used as prefix for log file names and console output
+     * @param retention the number of log files to keep for the daemon
+     * @param consoleFilter a regular expression selecting the lines to mirror to the Maven log, or
+     *     {@code null} if no lines should be mirrored
+     * @param consoleRateLimit the maximum number of lines per second to mirror to the Maven log
+     */
+    OutputSettings(
+            File directory,
+            String name,
+            int retention,
+            String consoleFilter,
+            int consoleRateLimit) {
+        this.directory = directory;
+        this.name = name;
+        logFilePattern =
+                Pattern.compile(Pattern.quote(name) + "-(\\d{8}-\\d{6}-\\d{3})(?:-(\\d+))?\\.log");
+        this.retention = retention;
+        this.consoleFilter = consoleFilter;
+        this.consoleRateLimit = consoleRateLimit;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get the pattern selecting the lines to mirror to the Maven log.
+     *
+     * @return the pattern, or {@code null} if no lines should be mirrored
+     */
+    Pattern getConsoleFilter() {
+        return consoleFilter == null ? null : Pattern.compile(consoleFilter);
+    }
+
+    int getConsoleRateLimit() {
+        return consoleRateLimit;
+    }
+
+    /**
+     * Create a new log file and delete the oldest log files of the daemon so that at most {@code
+     * retention} files remain. The file is considered active until {@link #release(File)} is
+     * called.
+     */
+    File newLogFile() throws IOException {
+        Files.createDirectories(directory.toPath());
+        String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMAT);
+        Path file;
+        for (int i = 0; ; i++) {
+            file =
+                    directory
+                            .toPath()
+                            .resolve(name + "-" + timestamp + (i == 0 ? "" : "-" + i) + ".log");
+            try {
+                Files.createFile(file);
+                break;
+            } catch (FileAlreadyExistsException ex) {
+                // Try next
+            }
+        }
+        activeLogFiles.add(file);
+        List<Matcher> files;
+        try (Stream<Path> stream = Files.list(directory.toPath())) {
+            // The timestamp format sorts chronologically; files created in the same millisecond
+            // are ordered by their sequence number.
+            files =
+                    stream.map(f -> logFilePattern.matcher(f.getFileName().toString()))
+                            .filter(Matcher::matches)
+                            .sorted(
+                                    Comparator.comparing((Matcher m) -> m.group(1))
+                                            .thenComparingInt(OutputSettings::getSequenceNumber))
+                            .collect(Collectors.toList());
+        }
+        for (int i = 0; i < files.size() - retention; i++) {
+            Path oldFile = directory.toPath().resolve(files.get(i).group());
+            if (!activeLogFiles.contains(oldFile)) {
+                Files.deleteIfExists(oldFile);
+            }
+        }
+        return file.toFile();
+    }
+
+    private static int getSequenceNumber(Matcher logFileName) {
+        String sequenceNumber = logFileName.group(2);
+        return sequenceNumber == null ? 0 : Integer.parseInt(sequenceNumber);
+    }
+
+    /** Make a log file eligible for retention once its launcher has terminated. */
+    static void release(File logFile) {
+        activeLogFiles.remove(logFile.toPath());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof OutputSettings)) {
+            return false;
+        }
+        OutputSettings other = (OutputSettings) obj;
+        return directory.equals(other.directory)
+                && name.equals(other.name)
+                && retention == other.retention
+                && Objects.equals(consoleFilter, other.consoleFilter)
+                && consoleRateLimit == other.consoleRateLimit;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(directory, name, retention, consoleFilter, consoleRateLimit);
+    }
+}
@@ -0,0 +1,190 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * A work directory placed on a RAM-backed file system, standing in for a work directory on disk.
+ * Selected files are copied back to the disk directory when the daemons have stopped.
+ */
+final class RamWorkDir {
+    private static final String CONTEXT_KEY = RamWorkDir.class.getName();
+
+    private final File directory;
+    private final File diskDirectory;
+    private final long maxSize;
+    private final String[] includes;
+    private final boolean shared;
+
+    private RamWorkDir(
+            File directory, File diskDirectory, long maxSize, String[] includes, boolean shared) {
+        this.directory = directory;
+        this.diskDirectory = diskDirectory;
+        this.maxSize = maxSize;
+        this.includes = includes;
+        this.shared = shared;
+    }
+
+    /**
+     * Create a RAM-backed work directory. The location is derived from the path of the disk
+     * directory and the execution ID so that persistent daemons find their registry again in
+     * subsequent builds, while executions sharing the same disk directory don't get in each other's
+     * way.
+     *
+     * @param ramDisk the mount point of the RAM-backed file system
+     * @param diskDirectory the work directory to replace
+     * @param executionId the ID of the execution starting the daemons
+     * @param maxSize the maximum amount of data the daemons are expected to write
+     * @param includes the patterns of the files to copy back
+     * @param shared {@code true} if the directory may still be used by daemons after the project
+     *     has been built (reused or persistent daemons); in that case it is neither cleaned nor
+     *     deleted
+     * @return the work directory, or {@code null} if the file system doesn't have {@code maxSize}
+     *     bytes of free space
+     */
+    static RamWorkDir create(
+            File ramDisk,
+            File diskDirectory,
+            String executionId,
+            long maxSize,
+            String[] includes,
+            boolean shared)
+            throws IOException {
+        if (Files.getFileStore(ramDisk.toPath()).getUsableSpace() < maxSize) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new Error(ex);
+        }
+        digest.update(diskDirectory.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(executionId.getBytes(StandardCharsets.UTF_8));
+        String key = HexFormat.of().formatHex(digest.digest(), 0, 8);
+        File directory = new File(ramDisk, "daemon-maven-plugin/" + key);
+        if (!shared) {
+            // Leftovers of a build that didn't stop its daemons.
+            FileUtils.deleteDirectory(directory);
+        }
+        Files.createDirectories(directory.toPath());
+        return new RamWorkDir(directory, diskDirectory, maxSize, includes, shared);
+    }
+
+    /** Remember a RAM-backed work directory so that {@link #unregisterAll} can process it. */
+    static void register(MavenProject project, RamWorkDir workDir) {
+        synchronized (project) {
+            @SuppressWarnings("unchecked")
+            List<RamWorkDir> workDirs = (List<RamWorkDir>) project.getContextValue(CONTEXT_KEY);
+            if (workDirs == null) {
+                workDirs = new ArrayList<>();
+                project.setContextValue(CONTEXT_KEY, workDirs);
+            }
+            workDirs.add(workDir);
+        }
+    }
+
+    /** Get and forget the RAM-backed work directories registered for the given project. */
+    static List<RamWorkDir> unregisterAll(MavenProject project) {
+        synchronized (project) {
+            @SuppressWarnings("unchecked")
+            List<RamWorkDir> workDirs = (List<RamWorkDir>) project.getContextValue(CONTEXT_KEY);
+            project.setContextValue(CONTEXT_KEY, null);
+            return workDirs == null ? Collections.emptyList() : workDirs;
+        }
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    long getMaxSize() {
+        return maxSize;
+    }
+
+    /** Determine the amount of data currently stored in the directory. */
+    long getSize() throws IOException {
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            return files.filter(Files::isRegularFile)
+                    .mapToLong(
+                            file -> {
+                                try {
+                                    return Files.size(file);
+                                } catch (IOException ex) {
+                                    // The file has been deleted in the meantime.
+                                    return 0;
+                                }
+                            })
+                    .sum();
+        }
+    }
+
+    /**
+     * Copy the included files back to the disk directory and delete the RAM-backed directory unless
+     * it is shared.
+     *
+     * @return the number of files copied
+     */
+    int release() throws IOException {
+        int count = 0;
+        if (includes.length > 0 && directory.exists()) {
+            DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir(directory);
+            scanner.setIncludes(includes);
+            scanner.scan();
+            for (String file : scanner.getIncludedFiles()) {
+                Path target = diskDirectory.toPath().resolve(file);
+                Files.createDirectories(target.getParent());
+                Files.copy(
+                        directory.toPath().resolve(file),
+                        target,
+                        StandardCopyOption.REPLACE_EXISTING);
+                count++;
+            }
+        }
+        if (!shared) {
+            FileUtils.deleteDirectory(directory);
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
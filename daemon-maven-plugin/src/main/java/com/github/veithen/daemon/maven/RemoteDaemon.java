@@ -20,166 +20,563 @@
 package com.github.veithen.daemon.maven;
 
 import java.io.File;
-import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
-import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluator;
-import org.codehaus.plexus.configuration.PlexusConfiguration;
 import org.codehaus.plexus.logging.Logger;
-import org.codehaus.plexus.util.StringUtils;
 
+import com.github.veithen.daemon.launcher.proto.AttachRequest;
+import com.github.veithen.daemon.launcher.proto.AttachResponse;
+import com.github.veithen.daemon.launcher.proto.ClassLoadingProfileOptions;
 import com.github.veithen.daemon.launcher.proto.DaemonRequest;
-import com.github.veithen.daemon.launcher.proto.DaemonResponse;
 import com.github.veithen.daemon.launcher.proto.DaemonResponse.ResponseCase;
+import com.github.veithen.daemon.launcher.proto.FlightRecorderOptions;
 import com.github.veithen.daemon.launcher.proto.InitRequest;
 import com.github.veithen.daemon.launcher.proto.InitResponse;
-import com.github.veithen.daemon.launcher.proto.MessageReader;
+import com.github.veithen.daemon.launcher.proto.LogBatch;
+import com.github.veithen.daemon.launcher.proto.LogRecord;
+import com.github.veithen.daemon.launcher.proto.LogStreaming;
 import com.github.veithen.daemon.launcher.proto.MessageWriter;
+import com.github.veithen.daemon.launcher.proto.MetricsRequest;
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
 import com.github.veithen.daemon.launcher.proto.StartRequest;
 import com.github.veithen.daemon.launcher.proto.StartResponse;
 import com.github.veithen.daemon.launcher.proto.StopRequest;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FileDescriptor;
 
-public class RemoteDaemon {
+public class RemoteDaemon implements ManagedDaemon {
+    /**
+     * The time to wait for the process to terminate after {@link ProcessHandle#destroy()} before
+     * escalating to {@link ProcessHandle#destroyForcibly()}.
+     */
+    private static final Duration DESTROY_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * The time to wait for the process to terminate after the control connection has been closed
+     * unexpectedly.
+     */
+    private static final Duration EXIT_STATUS_TIMEOUT = Duration.ofSeconds(1);
+
     private final Logger logger;
-    private final String jvm;
-    private final String[] vmArgs;
-    private final File workDir;
-    private final List<File> launcherClasspath;
+    private final String name;
+    private final LauncherProcess launcher;
     private final List<File> daemonClasspath;
     private final List<String> testClasspath;
-    private final PlexusConfiguration configuration;
-    private final ExpressionEvaluator expressionEvaluator;
     private final Map<String, Integer> ports;
-    private Process process;
-    private Socket controlSocket;
-    private MessageWriter<DaemonRequest> controlWriter;
-    private MessageReader<DaemonResponse, ResponseCase> controlReader;
+    private final StartupTiming timing;
+    private final MessageWriter<DaemonRequest> controlWriter;
+    private Map<String, Integer> allocatedPorts;
+    private int monitorPort;
+    private String fingerprint;
+    private boolean testClasspathUsed;
+    private boolean persistent;
+    private ByteString configuration;
+    private FlightRecording flightRecording;
+    private ClassLoadingProfile classLoadingProfile;
+    private Watchdog watchdog;
+
+    /** Set when the build no longer needs the daemon; its termination is then expected. */
+    private volatile boolean released;
+
+    /** Describes the unexpected termination of the daemon, if that occurred. */
+    private volatile String unexpectedExit;
 
-    public RemoteDaemon(
+    RemoteDaemon(
             Logger logger,
-            String jvm,
-            String[] vmArgs,
-            File workDir,
-            List<File> launcherClasspath,
+            String name,
+            LauncherProcess launcher,
             List<File> daemonClasspath,
             List<String> testClasspath,
-            PlexusConfiguration plexusConfiguration,
-            ExpressionEvaluator expressionEvaluator,
-            Map<String, Integer> ports) {
+            Map<String, Integer> ports,
+            StartupTiming timing) {
         this.logger = logger;
-        this.jvm = jvm;
-        this.vmArgs = vmArgs;
-        this.workDir = workDir;
-        this.launcherClasspath = launcherClasspath;
+        this.name = name;
+        this.launcher = launcher;
         this.daemonClasspath = daemonClasspath;
         this.testClasspath = testClasspath;
-        this.configuration = plexusConfiguration;
-        this.expressionEvaluator = expressionEvaluator;
         this.ports = ports;
+        this.timing = timing;
+        controlWriter = launcher.getControlWriter();
     }
 
-    public Process getProcess() {
-        return process;
+    public ProcessHandle getProcess() {
+        return launcher.getProcess();
     }
 
-    public Map<String, Integer> startDaemon() throws Throwable {
-        ServerSocket controlServerSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
-        try {
-            controlServerSocket.setSoTimeout(100);
-            List<String> cmdline = new ArrayList<>();
-            cmdline.add(jvm);
-            cmdline.add("-cp");
-            cmdline.add(StringUtils.join(launcherClasspath.iterator(), File.pathSeparator));
-            cmdline.addAll(Arrays.asList(vmArgs));
-            cmdline.add("com.github.veithen.daemon.launcher.Launcher");
-            cmdline.add(String.valueOf(controlServerSocket.getLocalPort()));
-
-            if (logger.isDebugEnabled()) {
-                logger.debug("Starting process with command line: " + cmdline);
-            }
-            process =
-                    Runtime.getRuntime()
-                            .exec(cmdline.toArray(new String[cmdline.size()]), null, workDir);
-            new Thread(new StreamPump(process.getInputStream(), logger, "[STDOUT] ")).start();
-            new Thread(new StreamPump(process.getErrorStream(), logger, "[STDERR] ")).start();
-            logger.debug(
-                    "Waiting for control connection on port " + controlServerSocket.getLocalPort());
-            while (true) {
-                try {
-                    controlSocket = controlServerSocket.accept();
-                    break;
-                } catch (SocketTimeoutException ex) {
-                    try {
-                        int exitValue = process.exitValue();
-                        throw new IllegalStateException(
-                                "Process terminated prematurely with exit code " + exitValue);
-                    } catch (IllegalThreadStateException ex2) {
-                        // Process is still running; continue
-                    }
-                }
-            }
-        } finally {
-            controlServerSocket.close();
-        }
-        logger.debug("Control connection established");
-        controlWriter = new MessageWriter<DaemonRequest>(controlSocket.getOutputStream());
-        controlReader =
-                new MessageReader<>(
-                        controlSocket.getInputStream(),
-                        DaemonResponse.parser(),
-                        DaemonResponse::getResponseCase);
+    public String getName() {
+        return name;
+    }
 
-        controlWriter.write(
-                DaemonRequest.newBuilder()
-                        .setInit(
-                                InitRequest.newBuilder()
-                                        .addAllClasspathEntry(
-                                                daemonClasspath.stream()
-                                                        .map(File::toString)
-                                                        .collect(Collectors.toList()))
-                                        .build())
-                        .build());
-        logger.debug("Awaiting initialization");
-        InitResponse initResponse = controlReader.read(ResponseCase.INIT).getInit();
+    @Override
+    public Map<String, Integer> getPorts() {
+        return allocatedPorts;
+    }
+
+    /**
+     * Get the loopback port on which the daemon serves metrics requests from other processes, or 0
+     * if the daemon was started without monitoring.
+     */
+    int getMonitorPort() {
+        return monitorPort;
+    }
+
+    @Override
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public boolean isTestClasspathUsed() {
+        return testClasspathUsed;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return getProcess().isAlive();
+    }
+
+    /**
+     * Indicates whether the daemon outlives the build. Persistent daemons are detached instead of
+     * being stopped.
+     */
+    boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * Get the configuration the daemon has been started with. This is only available for daemons
+     * obtained using {@link #attach(String)}.
+     */
+    ByteString getConfiguration() {
+        return configuration;
+    }
+
+    private static Descriptor getDescriptor(InitResponse initResponse) throws Exception {
         Descriptor descriptor =
                 FileDescriptor.buildFrom(initResponse.getFileDescriptor(), new FileDescriptor[0])
                         .findMessageTypeByName(initResponse.getConfigurationType());
         if (descriptor == null) {
             throw new Error("Unable to find descriptor for " + initResponse.getConfigurationType());
         }
+        return descriptor;
+    }
+
+    /**
+     * Load the daemon into the launcher JVM.
+     *
+     * @param classLoadingProfile the class loading profile to make until the daemon has started, or
+     *     {@code null} if class loading shouldn't be profiled
+     * @param monitor whether the launcher should serve metrics requests from other processes; see
+     *     {@link #getMonitorPort()}
+     * @return the descriptor for the daemon's configuration message
+     */
+    public Descriptor init(ClassLoadingProfile classLoadingProfile, boolean monitor)
+            throws Exception {
+        launcher.markUsed();
+        InitRequest.Builder initRequest =
+                InitRequest.newBuilder()
+                        .addAllClasspathEntry(
+                                daemonClasspath.stream()
+                                        .map(File::toString)
+                                        .collect(Collectors.toList()))
+                        .setMonitor(monitor);
+        if (classLoadingProfile != null) {
+            initRequest.setClassLoadingProfile(
+                    ClassLoadingProfileOptions.newBuilder()
+                            .setDestination(classLoadingProfile.getRecording().getAbsolutePath())
+                            .setSamplingInterval(
+                                    (int) ClassLoadingProfile.SAMPLING_INTERVAL.toMillis()));
+            this.classLoadingProfile = classLoadingProfile;
+        }
+        controlWriter.write(DaemonRequest.newBuilder().setInit(initRequest).build());
+        logger.debug("Awaiting initialization");
+        long start = System.nanoTime();
+        InitResponse initResponse;
+        try {
+            initResponse = launcher.read(ResponseCase.INIT).getInit();
+        } catch (IOException ex) {
+            throw addExitStatus(ex);
+        }
+        timing.record("init", System.nanoTime() - start);
+        timing.record("lookup", TimeUnit.MICROSECONDS.toNanos(initResponse.getLookupMicros()));
+        return getDescriptor(initResponse);
+    }
+
+    /**
+     * Attach to a persistent daemon that has been started by a previous build.
+     *
+     * @param token the attach token from the registry file
+     * @return the descriptor for the daemon's configuration message
+     */
+    public Descriptor attach(String token) throws Exception {
         controlWriter.write(
                 DaemonRequest.newBuilder()
-                        .setStart(
-                                StartRequest.newBuilder()
-                                        .setConfiguration(
-                                                PlexusConfigurationConverter.convert(
-                                                                configuration,
-                                                                expressionEvaluator,
-                                                                descriptor)
-                                                        .toByteString())
-                                        .addAllTestClasspathEntry(testClasspath)
-                                        .putAllPorts(ports)
-                                        .build())
+                        .setAttach(AttachRequest.newBuilder().setToken(token))
                         .build());
+        AttachResponse attachResponse = launcher.read(ResponseCase.ATTACH).getAttach();
+        persistent = true;
+        configuration = attachResponse.getConfiguration();
+        allocatedPorts = attachResponse.getPortsMap();
+        monitorPort = attachResponse.getMonitorPort();
+        watch();
+        return getDescriptor(attachResponse.getInit());
+    }
+
+    /**
+     * Start the daemon.
+     *
+     * @param configuration the serialized configuration message
+     * @param registryFile the registry file for a persistent daemon, or {@code null} if the daemon
+     *     should be stopped at the end of the build
+     * @param idleTimeout the time after which an unused persistent daemon stops
+     * @param logLevel the minimum level of the log records to stream to the Maven log, or {@code
+     *     null} to disable log streaming; ignored for persistent daemons
+     * @param flightRecording the flight recording to make, or {@code null}
+     * @param watchdog the watchdog settings, or {@code null} to wait for the daemon indefinitely
+     * @return the ports allocated by the daemon
+     */
+    public Map<String, Integer> start(
+            ByteString configuration,
+            File registryFile,
+            Duration idleTimeout,
+            Level logLevel,
+            FlightRecording flightRecording,
+            Watchdog watchdog)
+            throws Exception {
+        this.watchdog = watchdog;
+        StartRequest.Builder startRequest =
+                StartRequest.newBuilder()
+                        .setConfiguration(configuration)
+                        .addAllTestClasspathEntry(testClasspath)
+                        .putAllPorts(ports);
+        if (registryFile != null) {
+            startRequest
+                    .setRegistryFile(registryFile.getAbsolutePath())
+                    .setIdleTimeout((int) idleTimeout.toSeconds());
+            persistent = true;
+        } else {
+            boolean heartbeats = watchdog != null && !watchdog.getHeartbeatInterval().isZero();
+            if (logLevel != null) {
+                startRequest.setLogStreaming(
+                        LogStreaming.newBuilder().setLevel(logLevel.intValue()));
+            }
+            if (heartbeats) {
+                startRequest.setHeartbeatInterval((int) watchdog.getHeartbeatInterval().toMillis());
+            }
+            // A read timeout on the socket would leave the control connection in an undefined
+            // state; the reader allows to enforce the start timeout on the response queue instead.
+            boolean deadline = watchdog != null && !watchdog.getStartTimeout().isZero();
+            if (logLevel != null || heartbeats || deadline) {
+                launcher.startReader(
+                        this::log, heartbeats ? watchdog.getHeartbeatTimeout() : Duration.ZERO);
+            }
+        }
+        if (flightRecording != null) {
+            startRequest.setFlightRecorder(
+                    FlightRecorderOptions.newBuilder()
+                            .setSettings(flightRecording.getSettings())
+                            .setDestination(flightRecording.getFile().getAbsolutePath()));
+            this.flightRecording = flightRecording;
+        }
+        controlWriter.write(DaemonRequest.newBuilder().setStart(startRequest).build());
         logger.debug("Waiting for daemon to become ready");
-        StartResponse startResponse = controlReader.read(ResponseCase.START).getStart();
-        logger.debug("Daemon is ready");
-        return startResponse.getPortsMap();
+        long start = System.nanoTime();
+        StartResponse startResponse;
+        if (watchdog != null) {
+            launcher.setReadTimeout(watchdog.getStartTimeout());
+        }
+        try {
+            startResponse = launcher.read(ResponseCase.START).getStart();
+        } catch (SocketTimeoutException ex) {
+            released = true;
+            String message =
+                    "Daemon "
+                            + this
+                            + (ex instanceof HeartbeatLostException
+                                    ? " stopped sending heartbeats"
+                                    : " didn't start within "
+                                            + watchdog.getStartTimeout().toMillis()
+                                            + " ms");
+            File threadDumps = dumpThreads();
+            getProcess().destroyForcibly();
+            throw new IllegalStateException(
+                    threadDumps == null
+                            ? message
+                            : message + "; thread dumps saved to " + threadDumps);
+        } catch (IOException ex) {
+            throw addExitStatus(ex);
+        }
+        if (watchdog != null) {
+            launcher.setReadTimeout(Duration.ZERO);
+        }
+        logger.debug(
+                "Daemon is ready after "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                        + " ms");
+        timing.record("start", System.nanoTime() - start);
+        timing.record("daemon-init", TimeUnit.MICROSECONDS.toNanos(startResponse.getInitMicros()));
+        timing.record(
+                "daemon-start", TimeUnit.MICROSECONDS.toNanos(startResponse.getStartMicros()));
+        allocatedPorts = startResponse.getPortsMap();
+        monitorPort = startResponse.getMonitorPort();
+        testClasspathUsed = startResponse.getTestClasspathUsed();
+        if (classLoadingProfile != null) {
+            List<File> classpath = new ArrayList<>(daemonClasspath);
+            for (String entry : testClasspath) {
+                classpath.add(new File(entry));
+            }
+            classLoadingProfile.report(logger, toString(), classpath);
+        }
+        watch();
+        return allocatedPorts;
+    }
+
+    /**
+     * If the control connection failed because the launcher terminated, replace the exception by
+     * one that includes the exit status.
+     */
+    private Exception addExitStatus(IOException ex) {
+        try {
+            // The connection is closed slightly before the process terminates.
+            getProcess().onExit().get(EXIT_STATUS_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex2) {
+            Thread.currentThread().interrupt();
+            return ex;
+        } catch (ExecutionException | TimeoutException ex2) {
+            return ex;
+        }
+        return new IllegalStateException(
+                "Daemon " + this + " terminated with " + launcher.getExitStatus(), ex);
+    }
+
+    /**
+     * Save thread dumps of the daemon if it appears to hang.
+     *
+     * @return the file containing the thread dumps, or {@code null} if no thread dumps could be
+     *     taken
+     */
+    private File dumpThreads() {
+        if (watchdog == null) {
+            return null;
+        }
+        try {
+            return watchdog.dumpThreads(getProcess(), name);
+        } catch (IOException ex) {
+            logger.warn("Failed to take thread dumps of daemon " + this, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /** Report the termination of the daemon if it occurs before the daemon is released. */
+    private void watch() {
+        long start = System.nanoTime();
+        getProcess()
+                .onExit()
+                .thenRun(
+                        () -> {
+                            if (!released) {
+                                unexpectedExit =
+                                        "Daemon "
+                                                + this
+                                                + " terminated unexpectedly with "
+                                                + launcher.getExitStatus()
+                                                + ", "
+                                                + TimeUnit.NANOSECONDS.toMillis(
+                                                        System.nanoTime() - start)
+                                                + " ms after startup";
+                                logger.error(unexpectedExit);
+                            }
+                        });
     }
 
-    public void stopDaemon() throws Throwable {
+    /** Copy streamed log records to the Maven log. */
+    void log(LogBatch batch) {
+        for (LogRecord record : batch.getRecordList()) {
+            int level = record.getLevel();
+            // Check whether the record is enabled before formatting it.
+            if (level >= Level.SEVERE.intValue()) {
+                if (logger.isErrorEnabled()) {
+                    logger.error(format(record));
+                }
+            } else if (level >= Level.WARNING.intValue()) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn(format(record));
+                }
+            } else if (level >= Level.INFO.intValue()) {
+                if (logger.isInfoEnabled()) {
+                    logger.info(format(record));
+                }
+            } else if (logger.isDebugEnabled()) {
+                logger.debug(format(record));
+            }
+        }
+        if (batch.getDropped() > 0) {
+            logger.warn("[" + name + "] " + batch.getDropped() + " log records have been dropped");
+        }
+    }
+
+    private String format(LogRecord record) {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append('[').append(name).append("] [").append(record.getThread()).append("] ");
+        if (!record.getLogger().isEmpty()) {
+            buffer.append(record.getLogger()).append(" - ");
+        }
+        buffer.append(record.getMessage());
+        if (!record.getThrown().isEmpty()) {
+            buffer.append(System.lineSeparator()).append(record.getThrown().stripTrailing());
+        }
+        return buffer.toString();
+    }
+
+    @Override
+    public MetricsResponse getMetrics(Duration timeout) throws Exception {
+        if (!launcher.isReaderStarted()) {
+            // A read timeout on the socket would leave the control connection in an undefined
+            // state if the response arrives late.
+            launcher.startReader(this::log, Duration.ZERO);
+        }
+        controlWriter.write(
+                DaemonRequest.newBuilder().setMetrics(MetricsRequest.getDefaultInstance()).build());
+        launcher.setReadTimeout(timeout);
+        try {
+            return launcher.read(ResponseCase.METRICS).getMetrics();
+        } catch (SocketTimeoutException ex) {
+            launcher.abandonResponse(ResponseCase.METRICS);
+            throw ex;
+        } finally {
+            launcher.setReadTimeout(Duration.ZERO);
+        }
+    }
+
+    public void stopDaemon() throws Exception {
         controlWriter.write(
                 DaemonRequest.newBuilder().setStop(StopRequest.getDefaultInstance()).build());
-        controlReader.read(ResponseCase.STOP);
-        controlSocket.close();
+        launcher.read(ResponseCase.STOP);
+        launcher.close();
+    }
+
+    @Override
+    public void release(Duration gracefulTimeout) throws Exception {
+        released = true;
+        if (unexpectedExit != null) {
+            throw new IllegalStateException(unexpectedExit);
+        }
+        if (persistent) {
+            detach();
+        } else {
+            stop(gracefulTimeout);
+        }
+    }
+
+    /** Close the connection to a persistent daemon and leave it running. */
+    void detach() throws IOException {
+        released = true;
+        launcher.close();
+        logger.info("Detached from daemon " + this);
+    }
+
+    private static boolean waitFor(ProcessHandle process, long timeoutNanos)
+            throws InterruptedException {
+        try {
+            process.onExit().get(timeoutNanos, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (ExecutionException ex) {
+            throw new Error(ex);
+        }
+    }
+
+    /**
+     * Stop the daemon and wait for the process to terminate. If the daemon doesn't shut down within
+     * the given timeout, the process is destroyed.
+     */
+    void stop(Duration gracefulTimeout) throws Exception {
+        released = true;
+        ProcessHandle process = getProcess();
+        long start = System.nanoTime();
+        Exception failure = null;
+        SocketTimeoutException timeout = null;
+        try {
+            launcher.setReadTimeout(gracefulTimeout);
+            stopDaemon();
+        } catch (SocketTimeoutException ex) {
+            timeout = ex;
+        } catch (Exception ex) {
+            failure = ex;
+        }
+        String outcome;
+        if (failure == null
+                && timeout == null
+                && waitFor(process, gracefulTimeout.toNanos() - (System.nanoTime() - start))) {
+            outcome = "stopped";
+        } else {
+            if (failure == null) {
+                logger.warn(
+                        "Daemon "
+                                + this
+                                + (timeout instanceof HeartbeatLostException
+                                        ? " stopped sending heartbeats"
+                                        : " didn't stop within "
+                                                + gracefulTimeout.toMillis()
+                                                + " ms")
+                                + "; destroying process");
+                File threadDumps = dumpThreads();
+                if (threadDumps != null) {
+                    logger.warn("Thread dumps of daemon " + this + " saved to " + threadDumps);
+                }
+            }
+            process.destroy();
+            if (waitFor(process, DESTROY_TIMEOUT.toNanos())) {
+                outcome = "destroyed";
+            } else {
+                logger.warn("Daemon " + this + " didn't terminate; destroying process forcibly");
+                process.destroyForcibly();
+                waitFor(process, Long.MAX_VALUE);
+                outcome = "destroyed forcibly";
+            }
+        }
+        try {
+            launcher.installClassDataArchive();
+        } catch (IOException ex) {
+            logger.warn("Failed to install class data archive", ex);
+        }
+        logger.info(
+                "Daemon "
+                        + this
+                        + " "
+                        + outcome
+                        + " after "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                        + " ms");
+        if (failure != null) {
+            throw failure;
+        }
+        if (flightRecording != null && flightRecording.getFile().exists()) {
+            flightRecording.report(logger, name);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (pid " + getProcess().pid() + ")";
     }
 }
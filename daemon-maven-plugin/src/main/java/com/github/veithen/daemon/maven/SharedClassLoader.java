@@ -0,0 +1,55 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import com.github.veithen.daemon.Daemon;
+
+/**
+ * Parent class loader for daemons running in the Maven JVM. It exposes the daemon API and the
+ * protobuf runtime from the plugin class loader, so that the plugin can interact with the daemon
+ * directly, but hides everything else, so that the daemon doesn't see Maven's dependencies.
+ */
+final class SharedClassLoader extends ClassLoader {
+    private static final String API_PACKAGE = Daemon.class.getPackageName();
+
+    private final ClassLoader delegate;
+
+    SharedClassLoader(ClassLoader delegate) {
+        super("daemon-shared", ClassLoader.getPlatformClassLoader());
+        this.delegate = delegate;
+    }
+
+    /** Determine whether the given class is loaded from the plugin class loader. */
+    static boolean isShared(String className) {
+        if (className.startsWith("com.google.protobuf.")) {
+            return true;
+        }
+        int idx = className.lastIndexOf('.');
+        return idx != -1 && className.substring(0, idx).equals(API_PACKAGE);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (isShared(name)) {
+            return delegate.loadClass(name);
+        }
+        throw new ClassNotFoundException(name);
+    }
+}
@@ -20,12 +20,23 @@
 package com.github.veithen.daemon.maven;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -44,7 +55,8 @@ import org.codehaus.plexus.configuration.PlexusConfiguration;
 @Mojo(
         name = "start",
         defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST,
-        requiresDependencyResolution = ResolutionScope.TEST)
+        requiresDependencyResolution = ResolutionScope.TEST,
+        threadSafe = true)
 public final class StartMojo extends AbstractDaemonControlMojo {
     /** The maven project. */
     @Parameter(property = "project", required = true, readonly = true)
@@ -54,11 +66,9 @@ public final class StartMojo extends AbstractDaemonControlMojo {
     @Parameter(property = "session", required = true, readonly = true)
     private MavenSession session;
 
-    @Parameter(required = true)
-    private DaemonArtifact daemonArtifact;
+    @Parameter private DaemonArtifact daemonArtifact;
 
-    @Parameter(required = true)
-    private PlexusConfiguration daemonConfiguration;
+    @Parameter private PlexusConfiguration daemonConfiguration;
 
     /** The arguments to pass to the JVM when debug mode is enabled. */
     @Parameter(
@@ -85,6 +95,27 @@ public final class StartMojo extends AbstractDaemonControlMojo {
     @Parameter(property = "axis.server.jmx", defaultValue = "false")
     private boolean jmx;
 
+    /** The arguments to pass to the JVM when the fast start profile is enabled. */
+    @Parameter(defaultValue = "-XX:TieredStopAtLevel=1 -XX:+UseSerialGC")
+    private String fastStartArgs;
+
+    /**
+     * Indicates whether the JVM should be tuned for fast startup instead of peak performance.
+     * Daemons used in integration tests are typically short-lived, so that they rarely benefit from
+     * the optimizing compiler or a concurrent garbage collector.
+     */
+    @Parameter(property = "daemon.fastStart", defaultValue = "false")
+    private boolean fastStart;
+
+    /**
+     * Indicates whether a class data sharing archive should be used to speed up class loading in
+     * the daemon JVM. The archive is created automatically during the first run with a given JVM,
+     * launcher classpath and daemon classpath and stored in the local repository. On Java 25 and
+     * later, an AOT cache is used instead. This requires Java 13 or later.
+     */
+    @Parameter(property = "daemon.classDataSharing", defaultValue = "false")
+    private boolean classDataSharing;
+
     /**
      * Arbitrary JVM options to set on the command line. Note that this parameter uses the same
      * expression as the Surefire and Failsafe plugins. By setting the <code>argLine</code>
@@ -97,6 +128,14 @@ public final class StartMojo extends AbstractDaemonControlMojo {
 
     @Parameter private Port[] ports;
 
+    /**
+     * Additional daemons to start. Each entry has the same <code>daemonArtifact</code>, <code>
+     * daemonConfiguration</code> and <code>ports</code> parameters as the goal itself. All daemons
+     * configured in a single execution are started concurrently, and the port properties are set
+     * once all of them are ready.
+     */
+    @Parameter private DaemonDefinition[] daemons;
+
     /**
      * If this flag is set to <code>true</code>, then the execution of the goal will block after the
      * server has been started. This is useful if one wants to manually test some services deployed
@@ -108,33 +147,414 @@ public final class StartMojo extends AbstractDaemonControlMojo {
     @Parameter(property = "axis.server.foreground", defaultValue = "false")
     private boolean foreground;
 
+    /**
+     * The number of idle launcher JVMs to keep ready for subsequent executions of this goal. Idle
+     * launchers are spawned in the background and connect to the plugin before they are needed, so
+     * that the next daemon using the same JVM, JVM arguments and working directory can be started
+     * without waiting for a new JVM. The default value of 0 disables the pool.
+     */
+    @Parameter(property = "daemon.launcherPoolSize", defaultValue = "0")
+    private int launcherPoolSize;
+
+    /**
+     * Indicates whether the daemons may be reused by subsequent projects in a multi-module build.
+     * If this flag is set to <code>true</code>, the <code>stop-all</code> goal keeps the daemons
+     * running and hands them over to the next project that starts a daemon with the same artifact,
+     * configuration, JVM arguments and ports. The test classpath only needs to match if the daemon
+     * accessed it during startup (which is the case for the Jetty daemon); other daemons are reused
+     * across modules with different test classpaths. The daemons are stopped when the <code>
+     * stop-all</code> goal is executed for the last project in the reactor, or at the end of the
+     * build. Note that a reused daemon keeps the working directory of the project that started it.
+     */
+    @Parameter(property = "daemon.reuse", defaultValue = "false")
+    private boolean reuse;
+
+    /**
+     * Indicates whether the daemons should keep running after the build. If this flag is set to
+     * <code>true</code>, the <code>stop-all</code> goal only detaches from the daemons, and the
+     * next build using the same work directory attaches to them instead of starting new processes.
+     * A daemon is restarted if its configuration has changed and is replaced if its artifact, JVM
+     * arguments or test classpath have changed. The output of persistent daemons is written to a
+     * log file in the <code>.daemons</code> subdirectory of the work directory.
+     */
+    @Parameter(property = "daemon.persistent", defaultValue = "false")
+    private boolean persistent;
+
+    /**
+     * The time in seconds after which a persistent daemon stops if no build attaches to it. A
+     * persistent daemon also stops when its registry file is deleted, e.g. by <code>mvn clean
+     * </code>.
+     */
+    @Parameter(property = "daemon.idleTimeout", defaultValue = "1800")
+    private int idleTimeout;
+
+    /**
+     * Indicates whether the daemons should run inside the Maven JVM instead of a separate JVM. This
+     * avoids the JVM startup cost, which is useful for quick development iterations. The daemon is
+     * loaded in an isolated class loader that only shares the daemon API and the protobuf runtime
+     * with the plugin. JVM options (including <code>argLine</code>) have no effect in this mode,
+     * and it can't be combined with <code>persistent</code>.
+     */
+    @Parameter(property = "daemon.inProcess", defaultValue = "false")
+    private boolean inProcess;
+
+    /**
+     * Indicates whether the goal should return without waiting for the daemons to become ready. In
+     * that case, the plugin allocates the ports itself and sets the port properties right away, and
+     * the daemons boot in the background while the build continues. The <code>await</code> goal
+     * must be executed before the daemons are used. To overlap the startup with other work, bind
+     * this goal to an earlier phase, e.g. <code>package</code>, and the <code>await</code> goal to
+     * <code>pre-integration-test</code>. This flag can't be combined with <code>reuse
+     * </code> or <code>persistent</code> and is ignored in foreground mode. Note that the plugin
+     * finds free ports by binding and releasing them, so another process on the host may take a
+     * port before the daemon binds it; the daemon then fails to start and the <code>await</code>
+     * goal reports the failure. The startup phases of the daemons are reported by the <code>await
+     * </code> goal.
+     */
+    @Parameter(property = "daemon.async", defaultValue = "false")
+    private boolean async;
+
+    /**
+     * Indicates whether daemon launches should be queued when they would oversubscribe the host.
+     * This is useful in parallel builds where many projects start daemons at the same time. The
+     * plugin compares the heap budget of the daemons (as set by <code>-Xmx</code> in <code>argLine
+     * </code>, or the JVM default of a quarter of the physical memory) and their processor count
+     * (as set by <code>-XX:ActiveProcessorCount</code>, or 1) to the memory and processors of the
+     * host, and starts queued daemons when running daemons terminate. The daemons of a project that
+     * already has a running daemon are never queued. In-process daemons are not subject to
+     * admission control.
+     */
+    @Parameter(property = "daemon.admissionControl", defaultValue = "false")
+    private boolean admissionControl;
+
+    /**
+     * The CPUs to pin the daemon processes to, in the list format used by <code>taskset</code>,
+     * e.g. <code>0-1</code> or <code>0,2,4</code>. This keeps daemons and test JVMs from competing
+     * for the same cores. The plugin also passes <code>-XX:ActiveProcessorCount</code> with the
+     * number of CPUs in the set so that the JVM and the thread pools of the daemon are sized
+     * accordingly; an explicit value in <code>argLine</code> takes precedence. This option is only
+     * supported on Linux and requires <code>taskset</code> (from util-linux). It has no effect on
+     * in-process daemons.
+     */
+    @Parameter(property = "daemon.cpuSet")
+    private String cpuSet;
+
+    /**
+     * The directory to write the output of the daemons to. If this is set, the output of each
+     * daemon process is redirected to a new file in that directory, without passing through the
+     * Maven JVM, so that a chatty daemon isn't slowed down by the Maven console. Use <code>
+     * consoleFilter</code> to mirror some of the output to the Maven log. If this is not set, the
+     * output is copied to the Maven log. Persistent daemons always write their output to a file in
+     * the work directory.
+     */
+    @Parameter(property = "daemon.logDirectory")
+    private File logDirectory;
+
+    /** The number of log files to keep in <code>logDirectory</code> for each daemon. */
+    @Parameter(property = "daemon.logRetention", defaultValue = "10")
+    private int logRetention;
+
+    /**
+     * A regular expression selecting the lines written to <code>logDirectory</code> that are
+     * mirrored to the Maven log, e.g. <code>WARN|ERROR|Exception</code>, or <code>.</code> for all
+     * non empty lines. By default, no output is mirrored.
+     */
+    @Parameter(property = "daemon.consoleFilter")
+    private String consoleFilter;
+
+    /**
+     * The maximum number of lines per second per daemon that <code>consoleFilter</code> mirrors to
+     * the Maven log. Excess lines are counted but not shown.
+     */
+    @Parameter(property = "daemon.consoleRateLimit", defaultValue = "50")
+    private int consoleRateLimit;
+
+    /**
+     * If set, the daemons stream the records they log through <code>java.util.logging</code> at
+     * this level or above (<code>SEVERE</code>, <code>WARNING</code>, <code>INFO</code>, <code>
+     * CONFIG</code>, <code>FINE</code>, <code>FINER</code>, <code>FINEST</code> or <code>ALL
+     * </code>) to the Maven log over the control connection, instead of writing them to the
+     * console. Records are filtered in the daemon process, before they are formatted. Records below
+     * <code>INFO</code> are shown at debug level. Libraries logging through SLF4J are included if
+     * they are bound to <code>java.util.logging</code>. This has no effect on persistent and
+     * in-process daemons.
+     */
+    @Parameter(property = "daemon.logLevel")
+    private String logLevel;
+
+    /**
+     * The interval in seconds at which the daemon JVMs send heartbeats over the control connection,
+     * or 0 to disable heartbeats. If no heartbeat is received for three intervals while the plugin
+     * waits for a daemon to start or stop, the daemon is considered hung: thread dumps are saved to
+     * {@link #threadDumpDirectory} and the process is killed. This has no effect on persistent and
+     * in-process daemons.
+     */
+    @Parameter(property = "daemon.heartbeatInterval", defaultValue = "0")
+    private int heartbeatInterval;
+
+    /**
+     * The time in seconds each daemon is given to start, or 0 for no limit. If a daemon doesn't
+     * start in time, thread dumps are saved to {@link #threadDumpDirectory} and the process is
+     * killed. The time the <code>stop-all</code> goal waits for daemons to stop is controlled by
+     * its <code>stopTimeout</code> parameter; thread dumps are also saved if it expires. This has
+     * no effect on in-process daemons.
+     */
+    @Parameter(property = "daemon.startTimeout", defaultValue = "0")
+    private int startTimeout;
+
+    /** The directory where thread dumps of hung daemons are saved. */
+    @Parameter(defaultValue = "${project.build.directory}/daemon-dumps", required = true)
+    private File threadDumpDirectory;
+
+    /**
+     * Indicates whether the daemons can be inspected from another terminal using the <code>status
+     * </code> and <code>top</code> goals. If this flag is set, each daemon JVM serves metrics on a
+     * loopback port that any local process can connect to, and the daemon is registered in {@link
+     * #statusDirectory}. In-process daemons are not registered.
+     */
+    @Parameter(property = "daemon.monitor", defaultValue = "false")
+    private boolean monitor;
+
+    /**
+     * The directory where the daemons are registered while they are running if {@link #monitor} is
+     * enabled.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/daemon-status", required = true)
+    private File statusDirectory;
+
+    /**
+     * Run the daemons with Native Memory Tracking in summary mode, so that the footprint report
+     * written by the <code>stop-all</code> goal includes a breakdown of the native memory used by
+     * each daemon. This has a small overhead and no effect on in-process daemons.
+     */
+    @Parameter(property = "daemon.nativeMemoryTracking", defaultValue = "false")
+    private boolean nativeMemoryTracking;
+
+    /**
+     * Make a Java Flight Recorder recording of each daemon. The recording starts before the daemon
+     * is initialized and is written to {@link #flightRecordingDirectory} by the <code>stop-all
+     * </code> goal, before the daemon is stopped, so that it only covers the steady state. This
+     * can't be used with in-process, persistent or reused daemons.
+     */
+    @Parameter(property = "daemon.flightRecorder", defaultValue = "false")
+    private boolean flightRecorder;
+
+    /**
+     * The JFR configuration to use: the name of a predefined configuration (<code>default</code> or
+     * <code>profile</code>) or the path of a <code>.jfc</code> file.
+     */
+    @Parameter(property = "daemon.flightRecorderSettings", defaultValue = "profile")
+    private String flightRecorderSettings;
+
+    /**
+     * The directory to write flight recordings to. The files are named after the execution ID and
+     * the daemon.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/daemon-jfr", required = true)
+    private File flightRecordingDirectory;
+
+    /**
+     * Whether to log a summary of each flight recording (hot methods, allocation pressure and GC
+     * pauses) after the daemon has been stopped.
+     */
+    @Parameter(property = "daemon.flightRecordingSummary", defaultValue = "false")
+    private boolean flightRecordingSummary;
+
+    /**
+     * Profile the class loading in each daemon from its initialization until it has started. The
+     * report ranks the class loaders, jars and classes by the time spent loading classes and
+     * running static initializers; the latter is estimated by sampling the threads of the daemon.
+     * The report and the underlying JFR recording are written to {@link
+     * #classLoadingProfileDirectory} and the top jars are logged. This can't be used with
+     * in-process, persistent or reused daemons.
+     */
+    @Parameter(property = "daemon.classLoadingProfile", defaultValue = "false")
+    private boolean classLoadingProfile;
+
+    /**
+     * The directory to write class loading profiles to. The files are named after the execution ID
+     * and the daemon.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/daemon-profile", required = true)
+    private File classLoadingProfileDirectory;
+
+    /**
+     * The number of identical instances to start for each daemon, e.g. one per Failsafe fork. For
+     * each port, the plugin sets the following properties:
+     *
+     * <ul>
+     *   <li><code><i>propertyName</i></code>: the port of the first instance;
+     *   <li><code><i>propertyName</i>.<i>n</i></code>: the port of the <i>n</i>-th instance
+     *       (starting at 1, like <code>surefire.forkNumber</code>);
+     *   <li><code><i>propertyName</i>.list</code>: the ports of all instances, separated by commas.
+     * </ul>
+     *
+     * To give each test fork its own daemon, pass the <code>list</code> property and <code>
+     * ${surefire.forkNumber}</code> to the tests as system properties and select the port at index
+     * <code>(forkNumber - 1) % replicas</code>. If there is more than one instance, each one uses a
+     * numbered subdirectory of the work directory.
+     */
+    @Parameter(property = "daemon.replicas", defaultValue = "1")
+    private int replicas;
+
+    /**
+     * The directory where a report with the duration of the startup phases of each daemon is
+     * written. The report is a JSON file named after the execution ID.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/daemon-timing", required = true)
+    private File timingReportDirectory;
+
     /** The working directory for the process. */
     @Parameter(defaultValue = "${project.build.directory}/work", required = true)
     private File workDir;
 
+    /**
+     * Indicates whether the work directory should be placed on a RAM-backed file system (see <code>
+     * ramDisk</code>) instead of <code>workDir</code>. This avoids disk I/O for unpacked webapps
+     * and other scratch files. Files matching <code>ramWorkDirIncludes</code> are copied back to
+     * <code>workDir</code> by the <code>stop-all</code> goal.
+     */
+    @Parameter(property = "daemon.ramWorkDir", defaultValue = "false")
+    private boolean ramWorkDir;
+
+    /** The mount point of the RAM-backed file system to use if <code>ramWorkDir</code> is set. */
+    @Parameter(property = "daemon.ramDisk", defaultValue = "/dev/shm")
+    private File ramDisk;
+
+    /**
+     * The maximum amount of data the daemons are expected to write to a RAM-backed work directory,
+     * in the format used by <code>-Xmx</code>. If the file system has less free space, the plugin
+     * falls back to <code>workDir</code>. The <code>stop-all</code> goal emits a warning if the
+     * directory has grown beyond that size.
+     */
+    @Parameter(property = "daemon.ramWorkDirMaxSize", defaultValue = "512m")
+    private String ramWorkDirMaxSize;
+
+    /**
+     * The files to copy from a RAM-backed work directory to <code>workDir</code> when the daemons
+     * are stopped, relative to the work directory.
+     */
+    @Parameter(defaultValue = "**/*.log")
+    private String[] ramWorkDirIncludes;
+
     @Component private MojoExecution mojoExecution;
 
+    private List<DaemonDefinition> getDaemonDefinitions() throws MojoExecutionException {
+        List<DaemonDefinition> definitions = new ArrayList<>();
+        if (daemonArtifact != null) {
+            DaemonDefinition definition = new DaemonDefinition();
+            definition.setDaemonArtifact(daemonArtifact);
+            definition.setDaemonConfiguration(daemonConfiguration);
+            definition.setPorts(ports);
+            definitions.add(definition);
+        }
+        if (daemons != null) {
+            definitions.addAll(Arrays.asList(daemons));
+        }
+        if (definitions.isEmpty()) {
+            throw new MojoExecutionException("No daemon configured");
+        }
+        for (DaemonDefinition definition : definitions) {
+            DaemonArtifact daemonArtifact = definition.getDaemonArtifact();
+            if (daemonArtifact == null || definition.getDaemonConfiguration() == null) {
+                throw new MojoExecutionException(
+                        "daemonArtifact and daemonConfiguration must be specified for each daemon");
+            }
+            // Use the plugin group ID and version as default values for the daemon artifact.
+            if (daemonArtifact.getGroupId() == null) {
+                daemonArtifact.setGroupId(mojoExecution.getPlugin().getGroupId());
+            }
+            if (daemonArtifact.getVersion() == null
+                    && daemonArtifact.getGroupId().equals(mojoExecution.getPlugin().getGroupId())) {
+                daemonArtifact.setVersion(mojoExecution.getPlugin().getVersion());
+            }
+            if (definition.getPorts() == null) {
+                definition.setPorts(new Port[0]);
+            }
+        }
+        return definitions;
+    }
+
     @Override
     protected final void doExecute() throws MojoExecutionException, MojoFailureException {
         Log log = getLog();
 
-        // Use the plugin group ID and version as default values for the daemon artifact.
-        if (daemonArtifact.getGroupId() == null) {
-            daemonArtifact.setGroupId(mojoExecution.getPlugin().getGroupId());
+        List<DaemonDefinition> definitions = getDaemonDefinitions();
+        if (inProcess && persistent) {
+            throw new MojoExecutionException("inProcess and persistent can't be used together");
+        }
+        if (replicas < 1) {
+            throw new MojoExecutionException("replicas must be positive");
+        }
+        if (foreground && replicas > 1) {
+            throw new MojoExecutionException("replicas can't be used in foreground mode");
+        }
+        if (logDirectory != null) {
+            if (logRetention < 1) {
+                throw new MojoExecutionException("logRetention must be positive");
+            }
+            if (consoleRateLimit < 1) {
+                throw new MojoExecutionException("consoleRateLimit must be positive");
+            }
+            if (consoleFilter != null) {
+                try {
+                    Pattern.compile(consoleFilter);
+                } catch (PatternSyntaxException ex) {
+                    throw new MojoExecutionException("Invalid consoleFilter: " + ex.getMessage());
+                }
+            }
+        }
+        Level logLevel;
+        try {
+            logLevel = this.logLevel == null ? null : Level.parse(this.logLevel);
+        } catch (IllegalArgumentException ex) {
+            throw new MojoExecutionException("Invalid logLevel: " + this.logLevel);
+        }
+        boolean async = this.async && !foreground;
+        if (async && (reuse || persistent)) {
+            throw new MojoExecutionException("async can't be combined with reuse or persistent");
+        }
+
+        if (heartbeatInterval < 0 || startTimeout < 0) {
+            throw new MojoExecutionException(
+                    "heartbeatInterval and startTimeout can't be negative");
+        }
+        if (flightRecorder && (inProcess || persistent || reuse)) {
+            throw new MojoExecutionException(
+                    "flightRecorder can't be combined with inProcess, persistent or reuse");
         }
-        if (daemonArtifact.getVersion() == null
-                && daemonArtifact.getGroupId().equals(mojoExecution.getPlugin().getGroupId())) {
-            daemonArtifact.setVersion(mojoExecution.getPlugin().getVersion());
+        if (classLoadingProfile && (inProcess || persistent || reuse)) {
+            throw new MojoExecutionException(
+                    "classLoadingProfile can't be combined with inProcess, persistent or reuse");
         }
 
         // Compute JVM arguments
         List<String> vmArgs = new ArrayList<>();
+        if (cpuSet != null) {
+            if (!System.getProperty("os.name").equals("Linux")) {
+                throw new MojoExecutionException("cpuSet is only supported on Linux");
+            }
+            int cpuCount;
+            try {
+                cpuCount = countCpus(cpuSet);
+            } catch (IllegalArgumentException ex) {
+                throw new MojoExecutionException("Invalid cpuSet: " + ex.getMessage());
+            }
+            // Added first so that a value specified in argLine wins.
+            vmArgs.add("-XX:ActiveProcessorCount=" + cpuCount);
+        }
+        if (nativeMemoryTracking) {
+            vmArgs.add("-XX:NativeMemoryTracking=summary");
+        }
         if (debug) {
             processVMArgs(vmArgs, debugArgs);
         }
         if (jmx) {
             processVMArgs(vmArgs, jmxArgs);
         }
+        if (fastStart) {
+            processVMArgs(vmArgs, fastStartArgs);
+        }
         if (argLine != null) {
             processVMArgs(vmArgs, argLine);
         }
@@ -142,47 +562,131 @@ public final class StartMojo extends AbstractDaemonControlMojo {
             log.debug("Additional VM args: " + vmArgs);
         }
 
-        Map<String, Integer> portsIn = new HashMap<>();
-        if (foreground) {
-            for (Port port : ports) {
-                if (port.getForeground() != 0) {
-                    portsIn.put(port.getName(), port.getForeground());
-                }
-            }
+        List<String> testClasspath;
+        try {
+            testClasspath = project.getTestClasspathElements();
+        } catch (DependencyResolutionRequiredException ex) {
+            throw new MojoExecutionException("Failed to get test classpath", ex);
         }
+        PluginParameterExpressionEvaluator expressionEvaluator =
+                new PluginParameterExpressionEvaluator(session, mojoExecution);
 
+        File workDir = this.workDir;
+        if (ramWorkDir) {
+            long maxSize = MemorySize.parse(ramWorkDirMaxSize);
+            if (maxSize <= 0) {
+                throw new MojoExecutionException("Invalid ramWorkDirMaxSize: " + ramWorkDirMaxSize);
+            }
+            RamWorkDir ramWorkDir;
+            try {
+                ramWorkDir =
+                        RamWorkDir.create(
+                                ramDisk,
+                                workDir,
+                                mojoExecution.getExecutionId(),
+                                maxSize,
+                                ramWorkDirIncludes,
+                                reuse || persistent);
+            } catch (IOException ex) {
+                throw new MojoExecutionException(
+                        "Failed to create work directory on " + ramDisk, ex);
+            }
+            if (ramWorkDir == null) {
+                log.warn(
+                        "Not enough free space on "
+                                + ramDisk
+                                + " for a work directory of "
+                                + ramWorkDirMaxSize
+                                + "; using "
+                                + workDir);
+            } else {
+                log.info("Using work directory " + ramWorkDir);
+                RamWorkDir.register(project, ramWorkDir);
+                workDir = ramWorkDir.getDirectory();
+            }
+        }
         workDir.mkdirs();
-        Map<String, Integer> portsOut;
-        try {
-            portsOut =
-                    getDaemonManager()
-                            .startDaemon(
-                                    session,
-                                    vmArgs.toArray(new String[vmArgs.size()]),
-                                    workDir,
-                                    daemonArtifact,
-                                    project.getTestClasspathElements(),
-                                    daemonConfiguration,
-                                    new PluginParameterExpressionEvaluator(session, mojoExecution),
-                                    portsIn);
-        } catch (Throwable ex) {
-            throw new MojoFailureException("Failed to start server", ex);
+        List<Map<String, Integer>> portsRequested = new ArrayList<>();
+        List<CompletableFuture<Map<String, Integer>>> futures = new ArrayList<>();
+        List<DaemonSpec> specs = new ArrayList<>();
+        Set<Integer> allocatedPorts = new HashSet<>();
+        // The replicas of the i-th definition are stored at indexes i * replicas and above.
+        for (DaemonDefinition definition : definitions) {
+            for (int replica = 1; replica <= replicas; replica++) {
+                Map<String, Integer> portsIn = new HashMap<>();
+                if (foreground) {
+                    for (Port port : definition.getPorts()) {
+                        if (port.getForeground() != 0) {
+                            portsIn.put(port.getName(), port.getForeground());
+                        }
+                    }
+                } else if (async) {
+                    // The port properties are set before the daemons are ready; this requires the
+                    // port numbers to be known in advance.
+                    try {
+                        portsIn = allocatePorts(definition.getPorts(), allocatedPorts);
+                    } catch (IOException ex) {
+                        throw new MojoExecutionException("Failed to allocate port", ex);
+                    }
+                }
+                portsRequested.add(portsIn);
+                File replicaWorkDir =
+                        replicas == 1 ? workDir : new File(workDir, Integer.toString(replica));
+                replicaWorkDir.mkdirs();
+                DaemonSpec spec =
+                        createDaemonSpec(
+                                definition,
+                                vmArgs,
+                                logLevel,
+                                replicaWorkDir,
+                                testClasspath,
+                                expressionEvaluator,
+                                portsIn);
+                String fileName =
+                        mojoExecution.getExecutionId()
+                                + "-"
+                                + definition.getDaemonArtifact().getArtifactId();
+                if (replicas > 1) {
+                    fileName += "-" + replica;
+                }
+                if (flightRecorder) {
+                    flightRecordingDirectory.mkdirs();
+                    spec.setFlightRecording(new File(flightRecordingDirectory, fileName + ".jfr"));
+                    spec.setFlightRecorderSettings(flightRecorderSettings);
+                    spec.setFlightRecordingSummary(flightRecordingSummary);
+                }
+                if (classLoadingProfile) {
+                    classLoadingProfileDirectory.mkdirs();
+                    spec.setClassLoadingProfile(
+                            new ClassLoadingProfile(
+                                    new File(classLoadingProfileDirectory, fileName + ".jfr"),
+                                    new File(classLoadingProfileDirectory, fileName + ".txt")));
+                }
+                specs.add(spec);
+                futures.add(getDaemonManager().startDaemon(session, spec));
+            }
         }
 
-        for (Port port : ports) {
-            int portNumber = portsOut.getOrDefault(port.getName(), -1);
-            if (portNumber == -1) {
-                throw new MojoFailureException("Unknown port " + port.getName());
+        TimingReport timingReport =
+                new TimingReport(
+                        timingReportDirectory, mojoExecution.getExecutionId(), replicas, specs);
+        List<Map<String, Integer>> portsOut;
+        if (async) {
+            log.info("Daemons are starting in the background");
+            portsOut = portsRequested;
+            // The report is written by the await goal, once the startup phases are known.
+            TimingReport.register(project, timingReport);
+        } else {
+            try {
+                portsOut = awaitDaemons(futures);
+            } finally {
+                timingReport.write(getLog());
             }
-            if (foreground && port.getForeground() != 0 && portNumber != port.getForeground()) {
-                throw new MojoFailureException(
-                        "Daemon failed to allocate the expected port number for port "
-                                + port.getName());
-            }
-            project.getProperties()
-                    .setProperty(port.getPropertyName(), Integer.toString(portNumber));
         }
 
+        project.getProperties()
+                .putAll(getPortProperties(definitions, replicas, portsOut, foreground));
+
         if (foreground) {
             log.info("Server started in foreground mode. Press CRTL-C to stop.");
             Object lock = new Object();
@@ -197,6 +701,162 @@ public final class StartMojo extends AbstractDaemonControlMojo {
         }
     }
 
+    private DaemonSpec createDaemonSpec(
+            DaemonDefinition definition,
+            List<String> vmArgs,
+            Level logLevel,
+            File workDir,
+            List<String> testClasspath,
+            PluginParameterExpressionEvaluator expressionEvaluator,
+            Map<String, Integer> ports) {
+        DaemonSpec spec = new DaemonSpec();
+        spec.setVmArgs(vmArgs.toArray(new String[vmArgs.size()]));
+        spec.setWorkDir(workDir);
+        spec.setDaemonArtifact(definition.getDaemonArtifact());
+        spec.setTestClasspath(testClasspath);
+        spec.setConfiguration(definition.getDaemonConfiguration());
+        spec.setExpressionEvaluator(expressionEvaluator);
+        spec.setPorts(ports);
+        spec.setLauncherPoolSize(launcherPoolSize);
+        spec.setClassDataSharing(classDataSharing);
+        spec.setReuse(reuse);
+        spec.setPersistent(persistent);
+        spec.setIdleTimeout(Duration.ofSeconds(idleTimeout));
+        spec.setInProcess(inProcess);
+        spec.setAdmissionControl(admissionControl);
+        spec.setCpuSet(cpuSet);
+        spec.setLogDirectory(logDirectory);
+        spec.setLogRetention(logRetention);
+        spec.setConsoleFilter(consoleFilter);
+        spec.setConsoleRateLimit(consoleRateLimit);
+        spec.setLogLevel(logLevel);
+        spec.setHeartbeatInterval(Duration.ofSeconds(heartbeatInterval));
+        spec.setStartTimeout(Duration.ofSeconds(startTimeout));
+        spec.setThreadDumpDirectory(threadDumpDirectory);
+        spec.setStatusDirectory(monitor ? statusDirectory : null);
+        return spec;
+    }
+
+    private static List<Map<String, Integer>> awaitDaemons(
+            List<CompletableFuture<Map<String, Integer>>> futures)
+            throws MojoExecutionException, MojoFailureException {
+        // Wait for all daemons, even if one of them fails, so that none of them is still starting
+        // when the goal completes.
+        List<Map<String, Integer>> portsOut = new ArrayList<>();
+        Throwable failure = null;
+        for (CompletableFuture<Map<String, Integer>> future : futures) {
+            try {
+                portsOut.add(future.get());
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted", ex);
+            }
+        }
+        if (failure != null) {
+            throw new MojoFailureException("Failed to start server", failure);
+        }
+        return portsOut;
+    }
+
+    /**
+     * Compute the port properties described in {@link #replicas}.
+     *
+     * @param portsOut the ports allocated by the daemons; the replicas of the i-th definition are
+     *     stored at indexes <code>i * replicas</code> and above
+     * @return the property values, indexed by property name
+     */
+    static Map<String, String> getPortProperties(
+            List<DaemonDefinition> definitions,
+            int replicas,
+            List<Map<String, Integer>> portsOut,
+            boolean foreground)
+            throws MojoFailureException {
+        Map<String, String> properties = new HashMap<>();
+        for (int i = 0; i < definitions.size(); i++) {
+            for (Port port : definitions.get(i).getPorts()) {
+                List<String> portNumbers = new ArrayList<>();
+                for (int replica = 1; replica <= replicas; replica++) {
+                    int portNumber =
+                            portsOut.get(i * replicas + replica - 1)
+                                    .getOrDefault(port.getName(), -1);
+                    if (portNumber == -1) {
+                        throw new MojoFailureException("Unknown port " + port.getName());
+                    }
+                    if (foreground
+                            && port.getForeground() != 0
+                            && portNumber != port.getForeground()) {
+                        throw new MojoFailureException(
+                                "Daemon failed to allocate the expected port number for port "
+                                        + port.getName());
+                    }
+                    portNumbers.add(Integer.toString(portNumber));
+                    properties.put(
+                            port.getPropertyName() + "." + replica, Integer.toString(portNumber));
+                }
+                properties.put(port.getPropertyName(), portNumbers.get(0));
+                properties.put(port.getPropertyName() + ".list", String.join(",", portNumbers));
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Allocate a free port for each of the given ports.
+     *
+     * @param allocatedPorts the port numbers already allocated by this goal; updated with the new
+     *     port numbers so that no port number is handed out twice
+     */
+    static Map<String, Integer> allocatePorts(Port[] ports, Set<Integer> allocatedPorts)
+            throws IOException {
+        Map<String, Integer> result = new HashMap<>();
+        for (Port port : ports) {
+            int portNumber;
+            // The operating system may hand out a released port again.
+            do {
+                portNumber = allocatePort();
+            } while (!allocatedPorts.add(portNumber));
+            result.put(port.getName(), portNumber);
+        }
+        return result;
+    }
+
+    /**
+     * Find a free port. The port is released again before the daemon binds to it, so there is a
+     * small chance that another process grabs it in the meantime.
+     */
+    private static int allocatePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /** Count the CPUs in a list such as {@code 0-3,8,10-11}. */
+    static int countCpus(String cpuSet) {
+        Set<Integer> cpus = new HashSet<>();
+        for (String range : cpuSet.split(",")) {
+            String[] bounds = range.trim().split("-", 2);
+            int first;
+            int last;
+            try {
+                first = Integer.parseInt(bounds[0].trim());
+                last = bounds.length == 1 ? first : Integer.parseInt(bounds[1].trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException(cpuSet);
+            }
+            if (first < 0 || last < first) {
+                throw new IllegalArgumentException(cpuSet);
+            }
+            for (int cpu = first; cpu <= last; cpu++) {
+                cpus.add(cpu);
+            }
+        }
+        return cpus.size();
+    }
+
     private static void processVMArgs(List<String> vmArgs, String args) {
         vmArgs.addAll(Arrays.asList(args.trim().split(" +")));
     }
@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Records how long the phases of a daemon startup took. Phases may overlap: the daemon classpath is
+ * resolved while the launcher JVM is spawned, and the phases reported by the launcher are part of
+ * the corresponding round trip measured by the plugin.
+ */
+public final class StartupTiming {
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Record the duration of a phase. If the phase has already been recorded, the durations are
+     * added.
+     *
+     * @param phase the name of the phase
+     * @param nanos the duration in nanoseconds
+     */
+    public synchronized void record(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /** Execute a task and record its duration, even if it fails. */
+    <T> T measure(String phase, Callable<T> task) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return task.call();
+        } finally {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    /** Get the recorded phases, in the order in which they were first recorded. */
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+}
@@ -0,0 +1,36 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Display the daemons started by the current project, together with their CPU, memory and thread
+ * usage. This goal is meant to be invoked from another terminal in the project directory while the
+ * build that started the daemons is running.
+ */
+@Mojo(name = "status", threadSafe = true)
+public class StatusMojo extends AbstractStatusMojo {
+    @Override
+    public void execute() throws MojoExecutionException {
+        printStatus();
+    }
+}
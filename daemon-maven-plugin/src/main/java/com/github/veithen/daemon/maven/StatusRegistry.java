@@ -0,0 +1,225 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import com.github.veithen.daemon.launcher.proto.DaemonRequest;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse.ResponseCase;
+import com.github.veithen.daemon.launcher.proto.MessageReader;
+import com.github.veithen.daemon.launcher.proto.MessageWriter;
+import com.github.veithen.daemon.launcher.proto.MetricsRequest;
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+
+/**
+ * Keeps track of the daemons started by a project, so that they can be inspected by the {@code
+ * status} and {@code top} goals from another Maven process. There is one file per daemon, which is
+ * deleted when the daemon terminates while the plugin is still running. Files left behind by
+ * daemons that have terminated otherwise are removed when the registry is read.
+ */
+final class StatusRegistry {
+    private static final Duration MONITOR_TIMEOUT = Duration.ofSeconds(5);
+
+    static final class Entry {
+        private final long pid;
+        private final String name;
+        private final String project;
+        private final Instant startTime;
+        private final int monitorPort;
+        private final Map<String, Integer> ports;
+
+        Entry(
+                long pid,
+                String name,
+                String project,
+                Instant startTime,
+                int monitorPort,
+                Map<String, Integer> ports) {
+            this.pid = pid;
+            this.name = name;
+            this.project = project;
+            this.startTime = startTime;
+            this.monitorPort = monitorPort;
+            this.ports = ports;
+        }
+
+        long getPid() {
+            return pid;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getProject() {
+            return project;
+        }
+
+        Instant getStartTime() {
+            return startTime;
+        }
+
+        Map<String, Integer> getPorts() {
+            return ports;
+        }
+
+        /** Get a metrics snapshot through the monitor port of the daemon. */
+        MetricsResponse getMetrics() throws IOException {
+            try (Socket socket = new Socket()) {
+                socket.connect(
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), monitorPort),
+                        (int) MONITOR_TIMEOUT.toMillis());
+                socket.setSoTimeout((int) MONITOR_TIMEOUT.toMillis());
+                new MessageWriter<DaemonRequest>(socket.getOutputStream())
+                        .write(
+                                DaemonRequest.newBuilder()
+                                        .setMetrics(MetricsRequest.getDefaultInstance())
+                                        .build());
+                return new MessageReader<>(
+                                socket.getInputStream(),
+                                DaemonResponse.parser(),
+                                DaemonResponse::getResponseCase)
+                        .read(ResponseCase.METRICS)
+                        .getMetrics();
+            }
+        }
+    }
+
+    private final Path directory;
+
+    StatusRegistry(File directory) {
+        this.directory = directory.toPath();
+    }
+
+    /**
+     * Register a daemon that has been started or attached to.
+     *
+     * @param daemon the daemon
+     * @param project the ID of the project that uses the daemon
+     */
+    void register(RemoteDaemon daemon, String project) throws IOException {
+        register(
+                daemon.getProcess(),
+                daemon.getName(),
+                project,
+                daemon.getMonitorPort(),
+                daemon.getPorts());
+    }
+
+    void register(
+            ProcessHandle process,
+            String name,
+            String project,
+            int monitorPort,
+            Map<String, Integer> ports)
+            throws IOException {
+        Properties props = new Properties();
+        props.setProperty("pid", Long.toString(process.pid()));
+        props.setProperty("name", name);
+        props.setProperty("project", project);
+        props.setProperty(
+                "startTime", process.info().startInstant().orElseGet(Instant::now).toString());
+        props.setProperty("monitorPort", Integer.toString(monitorPort));
+        for (Map.Entry<String, Integer> port : ports.entrySet()) {
+            props.setProperty("port." + port.getKey(), Integer.toString(port.getValue()));
+        }
+        Files.createDirectories(directory);
+        Path file = directory.resolve(process.pid() + ".properties");
+        // Write the file atomically so that readers never see a partially written file.
+        Path tmpFile = Files.createTempFile(directory, "status", ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmpFile)) {
+            props.store(out, null);
+        }
+        Files.move(
+                tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        process.onExit()
+                .thenRun(
+                        () -> {
+                            try {
+                                Files.deleteIfExists(file);
+                            } catch (IOException ex) {
+                                // Ignore; the file is removed by the next reader
+                            }
+                        });
+    }
+
+    /** Get the daemons that are still running, in the order in which they have been started. */
+    List<Entry> list() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return entries;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(p -> p.toString().endsWith(".properties")).toList();
+        }
+        for (Path file : files) {
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                props.load(in);
+            } catch (NoSuchFileException ex) {
+                continue;
+            }
+            long pid = Long.parseLong(props.getProperty("pid"));
+            Optional<ProcessHandle> process = ProcessHandle.of(pid);
+            if (process.isEmpty() || !process.get().isAlive()) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            Map<String, Integer> ports = new TreeMap<>();
+            for (String key : props.stringPropertyNames()) {
+                if (key.startsWith("port.")) {
+                    ports.put(key.substring(5), Integer.parseInt(props.getProperty(key)));
+                }
+            }
+            entries.add(
+                    new Entry(
+                            pid,
+                            props.getProperty("name"),
+                            props.getProperty("project"),
+                            Instant.parse(props.getProperty("startTime")),
+                            Integer.parseInt(props.getProperty("monitorPort")),
+                            ports));
+        }
+        entries.sort(Comparator.comparing(Entry::getStartTime));
+        return entries;
+    }
+}
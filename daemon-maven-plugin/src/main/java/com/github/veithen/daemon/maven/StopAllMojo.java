@@ -19,21 +19,242 @@
  */
 package com.github.veithen.daemon.maven;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
 
 /** Stop all processes created by {@link StartMojo}. */
-@Mojo(name = "stop-all", defaultPhase = LifecyclePhase.POST_INTEGRATION_TEST)
+@Mojo(name = "stop-all", defaultPhase = LifecyclePhase.POST_INTEGRATION_TEST, threadSafe = true)
 public class StopAllMojo extends AbstractDaemonControlMojo {
+    /** The time daemons are given to respond to a metrics request. */
+    private static final Duration METRICS_TIMEOUT = Duration.ofSeconds(10);
+
+    /** The current build session instance. */
+    @Parameter(property = "session", required = true, readonly = true)
+    private MavenSession session;
+
+    /**
+     * The time in seconds each daemon is given to shut down gracefully. Daemons that are still
+     * running after that time are terminated, first with {@link Process#destroy()} and then, if
+     * necessary, with {@link Process#destroyForcibly()}.
+     */
+    @Parameter(property = "daemon.stopTimeout", defaultValue = "60")
+    private int stopTimeout;
+
+    /**
+     * The directory where a snapshot of the metrics of each daemon is written before it is stopped.
+     * The snapshot is a JSON file named after the execution ID. It contains the counters and gauges
+     * published by the daemon through <code>DaemonContext.getMetrics()</code>, as well as JVM data
+     * such as heap usage and garbage collection counts and times.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/daemon-metrics", required = true)
+    private File metricsReportDirectory;
+
+    /**
+     * The directory where the footprint report is written. The report is a text file named after
+     * the execution ID that lists the resident set size, heap, metaspace and code cache usage of
+     * each daemon, together with the Native Memory Tracking summary if the daemons have been
+     * started with <code>nativeMemoryTracking</code>.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/daemon-footprint", required = true)
+    private File footprintReportDirectory;
+
+    /**
+     * If set, the build fails if the footprint of a daemon exceeds this size (e.g. <code>1g</code>
+     * ). The footprint is the resident set size of the process, or an estimate if it isn't
+     * available. The daemons are stopped before the build fails.
+     */
+    @Parameter(property = "daemon.maxFootprint")
+    private String maxFootprint;
+
+    @Parameter(defaultValue = "${mojoExecution}", required = true, readonly = true)
+    private MojoExecution mojoExecution;
+
     @Override
     protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        if (stopTimeout <= 0) {
+            throw new MojoExecutionException("stopTimeout must be positive");
+        }
+        long maxFootprint = -1;
+        if (this.maxFootprint != null) {
+            maxFootprint = MemorySize.parse(this.maxFootprint);
+            if (maxFootprint <= 0) {
+                throw new MojoExecutionException("Invalid maxFootprint: " + this.maxFootprint);
+            }
+        }
+        Map<String, MetricsResponse> metrics =
+                getDaemonManager().collectMetrics(session, METRICS_TIMEOUT);
+        writeMetricsReport(metrics);
+        List<String> oversized = writeFootprintReport(metrics, maxFootprint);
+        MojoFailureException failure = null;
         try {
-            getDaemonManager().stopAll();
+            getDaemonManager().stopAll(session, Duration.ofSeconds(stopTimeout));
         } catch (Throwable ex) {
-            throw new MojoFailureException(
-                    "Errors occurred while attempting to stop processes", ex);
+            failure =
+                    new MojoFailureException(
+                            "Errors occurred while attempting to stop processes", ex);
+        }
+        MojoExecutionException releaseFailure = releaseRamWorkDirs();
+        if (failure == null && !oversized.isEmpty()) {
+            failure =
+                    new MojoFailureException(
+                            "The footprint of the following daemons exceeds "
+                                    + this.maxFootprint
+                                    + ": "
+                                    + String.join(", ", oversized));
+        }
+        if (failure != null) {
+            // Don't let a failure to copy back files hide the more relevant error.
+            if (releaseFailure != null) {
+                failure.addSuppressed(releaseFailure);
+            }
+            throw failure;
+        }
+        if (releaseFailure != null) {
+            throw releaseFailure;
+        }
+    }
+
+    /**
+     * Log the footprint of each daemon and write the footprint report.
+     *
+     * @param maxFootprint the maximum footprint, or -1 if there is no limit
+     * @return the daemons whose footprint exceeds the limit
+     */
+    private List<String> writeFootprintReport(
+            Map<String, MetricsResponse> metrics, long maxFootprint) {
+        Log log = getLog();
+        List<String> oversized = new ArrayList<>();
+        if (metrics.isEmpty()) {
+            return oversized;
+        }
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, MetricsResponse> entry : metrics.entrySet()) {
+            String daemon = entry.getKey();
+            Footprint footprint = Footprint.of(entry.getValue());
+            String message = "Footprint of daemon " + daemon + ": " + footprint;
+            if (maxFootprint != -1 && footprint.getTotal() > maxFootprint) {
+                log.error(message);
+                oversized.add(daemon);
+            } else {
+                log.info(message);
+            }
+            report.append(message).append('\n');
+            String nativeMemorySummary = entry.getValue().getNativeMemorySummary();
+            if (!nativeMemorySummary.isEmpty()) {
+                report.append(nativeMemorySummary).append('\n');
+            }
+            report.append('\n');
+        }
+        File file = new File(footprintReportDirectory, mojoExecution.getExecutionId() + ".txt");
+        try {
+            footprintReportDirectory.mkdirs();
+            Files.writeString(file.toPath(), report);
+        } catch (IOException ex) {
+            log.warn("Failed to write " + file, ex);
+        }
+        return oversized;
+    }
+
+    private void writeMetricsReport(Map<String, MetricsResponse> metrics) {
+        if (metrics.isEmpty()) {
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"execution\": \"")
+                .append(Json.escape(mojoExecution.getExecutionId()))
+                .append("\",\n  \"timestamp\": \"")
+                .append(Instant.now())
+                .append("\",\n  \"daemons\": [");
+        String separator = "\n";
+        for (Map.Entry<String, MetricsResponse> entry : metrics.entrySet()) {
+            json.append(separator)
+                    .append("    {\n      \"name\": \"")
+                    .append(Json.escape(entry.getKey()))
+                    .append("\",\n      \"counters\": {");
+            appendValues(json, entry.getValue().getCountersMap(), String::valueOf);
+            json.append("},\n      \"gauges\": {");
+            appendValues(json, entry.getValue().getGaugesMap(), Json::number);
+            json.append("}\n    }");
+            separator = ",\n";
+        }
+        json.append("\n  ]\n}\n");
+        File report = new File(metricsReportDirectory, mojoExecution.getExecutionId() + ".json");
+        try {
+            metricsReportDirectory.mkdirs();
+            Files.writeString(report.toPath(), json);
+        } catch (IOException ex) {
+            getLog().warn("Failed to write " + report, ex);
+        }
+    }
+
+    private static <T> void appendValues(
+            StringBuilder json, Map<String, T> values, Function<T, String> formatter) {
+        String separator = "";
+        // Sort the metrics by name to make the report easier to read.
+        for (Map.Entry<String, T> entry : new TreeMap<>(values).entrySet()) {
+            json.append(separator)
+                    .append('"')
+                    .append(Json.escape(entry.getKey()))
+                    .append("\": ")
+                    .append(formatter.apply(entry.getValue()));
+            separator = ", ";
+        }
+    }
+
+    /**
+     * Release the RAM-backed work directories of the current project. A failure doesn't prevent the
+     * remaining directories from being released.
+     *
+     * @return the failure, or {@code null} if all directories have been released
+     */
+    private MojoExecutionException releaseRamWorkDirs() {
+        Log log = getLog();
+        MojoExecutionException failure = null;
+        for (RamWorkDir workDir : RamWorkDir.unregisterAll(session.getCurrentProject())) {
+            try {
+                long size = workDir.getSize();
+                if (size > workDir.getMaxSize()) {
+                    log.warn(
+                            "Work directory "
+                                    + workDir
+                                    + " has grown to "
+                                    + (size >> 20)
+                                    + " MB, which exceeds ramWorkDirMaxSize");
+                }
+                int count = workDir.release();
+                if (log.isDebugEnabled()) {
+                    log.debug("Copied " + count + " files from " + workDir);
+                }
+            } catch (IOException ex) {
+                MojoExecutionException releaseFailure =
+                        new MojoExecutionException(
+                                "Failed to release work directory " + workDir, ex);
+                if (failure == null) {
+                    failure = releaseFailure;
+                } else {
+                    failure.addSuppressed(releaseFailure);
+                }
+            }
         }
+        return failure;
     }
 }
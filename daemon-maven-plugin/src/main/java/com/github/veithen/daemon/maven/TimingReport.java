@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/** Report with the duration of the startup phases of the daemons started by an execution. */
+final class TimingReport {
+    private static final String CONTEXT_KEY = TimingReport.class.getName();
+
+    private final File directory;
+    private final String executionId;
+    private final int replicas;
+    private final List<DaemonSpec> specs;
+
+    /**
+     * Constructor.
+     *
+     * @param specs the daemons; the replicas of the i-th daemon are stored at indexes {@code i *
+     *     replicas} and above
+     */
+    TimingReport(File directory, String executionId, int replicas, List<DaemonSpec> specs) {
+        this.directory = directory;
+        this.executionId = executionId;
+        this.replicas = replicas;
+        this.specs = specs;
+    }
+
+    /**
+     * Remember a report for daemons started in asynchronous mode so that the {@code await} goal can
+     * write it.
+     */
+    static void register(MavenProject project, TimingReport report) {
+        synchronized (project) {
+            @SuppressWarnings("unchecked")
+            List<TimingReport> reports = (List<TimingReport>) project.getContextValue(CONTEXT_KEY);
+            if (reports == null) {
+                reports = new ArrayList<>();
+                project.setContextValue(CONTEXT_KEY, reports);
+            }
+            reports.add(report);
+        }
+    }
+
+    /** Get and forget the reports registered for the given project. */
+    static List<TimingReport> unregisterAll(MavenProject project) {
+        synchronized (project) {
+            @SuppressWarnings("unchecked")
+            List<TimingReport> reports = (List<TimingReport>) project.getContextValue(CONTEXT_KEY);
+            project.setContextValue(CONTEXT_KEY, null);
+            return reports == null ? Collections.emptyList() : reports;
+        }
+    }
+
+    /** Log the startup phases of the daemons and write them to the report file. */
+    void write(Log log) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"execution\": \"")
+                .append(Json.escape(executionId))
+                .append("\",\n  \"timestamp\": \"")
+                .append(Instant.now())
+                .append("\",\n  \"daemons\": [");
+        for (int i = 0; i < specs.size(); i++) {
+            DaemonSpec spec = specs.get(i);
+            String name = spec.getDaemonArtifact().getArtifactId();
+            int replica = i % replicas + 1;
+            Map<String, Long> phases = spec.getTiming().getPhases();
+            Long total = phases.remove("total");
+            if (total != null) {
+                StringBuilder message = new StringBuilder("Startup of ").append(name);
+                if (replicas > 1) {
+                    message.append(" #").append(replica);
+                }
+                message.append(" took ").append(formatMillis(total)).append(" ms");
+                String separator = " (";
+                for (Map.Entry<String, Long> phase : phases.entrySet()) {
+                    message.append(separator)
+                            .append(phase.getKey())
+                            .append(": ")
+                            .append(formatMillis(phase.getValue()))
+                            .append(" ms");
+                    separator = ", ";
+                }
+                if (!phases.isEmpty()) {
+                    message.append(')');
+                }
+                log.info(message);
+            }
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": \"")
+                    .append(Json.escape(name))
+                    .append("\", \"replica\": ")
+                    .append(replica)
+                    .append(", \"completed\": ")
+                    .append(total != null)
+                    .append(", \"phases\": {");
+            if (total != null) {
+                phases.put("total", total);
+            }
+            String separator = "";
+            for (Map.Entry<String, Long> phase : phases.entrySet()) {
+                json.append(separator)
+                        .append('"')
+                        .append(Json.escape(phase.getKey()))
+                        .append("\": ")
+                        .append(formatMillis(phase.getValue()));
+                separator = ", ";
+            }
+            json.append("}}");
+        }
+        json.append("\n  ]\n}\n");
+        File report = new File(directory, executionId + ".json");
+        try {
+            directory.mkdirs();
+            Files.writeString(report.toPath(), json);
+        } catch (IOException ex) {
+            log.warn("Failed to write " + report, ex);
+        }
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,56 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Periodically display the daemons started by the current project, together with their CPU, memory
+ * and thread usage. Like {@link StatusMojo}, this goal is meant to be invoked from another
+ * terminal. The CPU usage is computed over the interval between two updates.
+ */
+@Mojo(name = "top", threadSafe = true)
+public class TopMojo extends AbstractStatusMojo {
+    /** The interval in seconds between two updates. */
+    @Parameter(property = "daemon.topInterval", defaultValue = "2")
+    private int interval;
+
+    /** The number of updates to display, or 0 to continue until interrupted. */
+    @Parameter(property = "daemon.topCount", defaultValue = "0")
+    private int count;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        for (int i = 0; count == 0 || i < count; i++) {
+            if (i > 0) {
+                try {
+                    Thread.sleep(interval * 1000L);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                getLog().info("");
+            }
+            printStatus();
+        }
+    }
+}
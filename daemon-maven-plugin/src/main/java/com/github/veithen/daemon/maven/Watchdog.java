@@ -0,0 +1,132 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how a launcher is supervised while the plugin waits for it: the heartbeat interval, the
+ * deadline for the daemon to start and where to save thread dumps when the daemon appears to hang.
+ */
+final class Watchdog {
+    /** The number of heartbeats that may be missed before the launcher is considered hung. */
+    private static final int MISSED_HEARTBEATS = 3;
+
+    private static final int THREAD_DUMPS = 3;
+    private static final Duration THREAD_DUMP_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration JCMD_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Duration heartbeatInterval;
+    private final Duration startTimeout;
+    private final File threadDumpDirectory;
+
+    /**
+     * Constructor.
+     *
+     * @param heartbeatInterval the interval at which the launcher sends heartbeats, or zero to
+     *     disable heartbeats
+     * @param startTimeout the time the daemon is given to start, or zero for no limit
+     * @param threadDumpDirectory the directory to save thread dumps to
+     */
+    Watchdog(Duration heartbeatInterval, Duration startTimeout, File threadDumpDirectory) {
+        this.heartbeatInterval = heartbeatInterval;
+        this.startTimeout = startTimeout;
+        this.threadDumpDirectory = threadDumpDirectory;
+    }
+
+    Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    /** Get the time without heartbeat after which the launcher is considered hung. */
+    Duration getHeartbeatTimeout() {
+        return heartbeatInterval.multipliedBy(MISSED_HEARTBEATS);
+    }
+
+    Duration getStartTimeout() {
+        return startTimeout;
+    }
+
+    /**
+     * Take a few thread dumps of a launcher using {@code jcmd} and save them to a file.
+     *
+     * @param process the launcher process
+     * @param name the name of the daemon, used as prefix for the file name
+     * @return the file containing the thread dumps
+     */
+    File dumpThreads(ProcessHandle process, String name) throws IOException, InterruptedException {
+        threadDumpDirectory.mkdirs();
+        File file =
+                new File(
+                        threadDumpDirectory,
+                        name
+                                + "-"
+                                + process.pid()
+                                + "-"
+                                + LocalDateTime.now().format(TIMESTAMP_FORMAT)
+                                + ".txt");
+        String jcmd = getJcmd(process).toString();
+        for (int i = 0; i < THREAD_DUMPS; i++) {
+            if (i > 0) {
+                Thread.sleep(THREAD_DUMP_INTERVAL.toMillis());
+            }
+            Process jcmdProcess =
+                    new ProcessBuilder(jcmd, Long.toString(process.pid()), "Thread.print")
+                            .redirectErrorStream(true)
+                            .redirectOutput(Redirect.appendTo(file))
+                            .start();
+            if (!jcmdProcess.waitFor(JCMD_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                jcmdProcess.destroyForcibly();
+                throw new IOException(
+                        "jcmd didn't complete within " + JCMD_TIMEOUT.toSeconds() + " s");
+            }
+            if (jcmdProcess.exitValue() != 0) {
+                // The JVM doesn't respond to attach requests; the file contains the error.
+                break;
+            }
+        }
+        return file;
+    }
+
+    /** Find the jcmd executable of the JVM running the given process, or of the current JVM. */
+    private static Path getJcmd(ProcessHandle process) {
+        String exe = System.getProperty("os.name").startsWith("Windows") ? "jcmd.exe" : "jcmd";
+        Path java = process.info().command().map(Paths::get).orElse(null);
+        if (java != null) {
+            Path jcmd = java.resolveSibling(exe);
+            if (Files.exists(jcmd)) {
+                return jcmd;
+            }
+        }
+        return Paths.get(System.getProperty("java.home"), "bin", exe);
+    }
+}
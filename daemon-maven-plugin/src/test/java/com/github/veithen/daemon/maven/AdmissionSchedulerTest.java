@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.jupiter.api.Test;
+
+public class AdmissionSchedulerTest {
+    @Test
+    public void testGetMaxHeapSize() {
+        assertThat(AdmissionScheduler.getMaxHeapSize(new String[] {"-Xms64m", "-Xmx512m"}))
+                .isEqualTo(512L << 20);
+        assertThat(AdmissionScheduler.getMaxHeapSize(new String[] {"-Xmx1g", "-Xmx2G"}))
+                .isEqualTo(2L << 30);
+        assertThat(AdmissionScheduler.getMaxHeapSize(new String[] {"-XX:MaxHeapSize=65536"}))
+                .isEqualTo(65536);
+        assertThat(AdmissionScheduler.getMaxHeapSize(new String[] {"-Xmxfoo"})).isEqualTo(-1);
+        assertThat(AdmissionScheduler.getMaxHeapSize(new String[0])).isEqualTo(-1);
+    }
+
+    @Test
+    public void testGetProcessorCount() {
+        assertThat(AdmissionScheduler.getProcessorCount(new String[0])).isEqualTo(1);
+        assertThat(
+                        AdmissionScheduler.getProcessorCount(
+                                new String[] {"-XX:ActiveProcessorCount=4"}))
+                .isEqualTo(4);
+    }
+
+    @Test
+    public void testQueueing() throws Exception {
+        AdmissionScheduler scheduler =
+                new AdmissionScheduler(new ConsoleLogger(Logger.LEVEL_INFO, "test"), 1024, 4, 256);
+        AdmissionScheduler.Admission a1 = scheduler.admit("p1", "d1", 768, 1, null);
+        // The same owner is never queued.
+        AdmissionScheduler.Admission a2 = scheduler.admit("p1", "d2", 768, 1, null);
+        CompletableFuture<AdmissionScheduler.Admission> a3 =
+                CompletableFuture.supplyAsync(
+                        () -> {
+                            try {
+                                return scheduler.admit("p2", "d3", 512, 1, null);
+                            } catch (InterruptedException ex) {
+                                throw new RuntimeException(ex);
+                            }
+                        });
+        Thread.sleep(100);
+        assertThat(a3).isNotDone();
+        a1.release();
+        Thread.sleep(100);
+        assertThat(a3).isNotDone();
+        a2.release();
+        a3.get(10, TimeUnit.SECONDS).release();
+    }
+}
@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ClassDataArchiveTest {
+    @Test
+    public void testFirstInstallWins(@TempDir Path tempDir) throws Exception {
+        ClassDataArchive archive =
+                ClassDataArchive.create(
+                        Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                        tempDir.toFile(),
+                        new String[0],
+                        List.of(),
+                        List.of());
+        Path output1 = archive.newOutputFile();
+        Path output2 = archive.newOutputFile();
+        Files.writeString(output1, "first");
+        Files.writeString(output2, "second");
+        archive.install(output1);
+        archive.install(output2);
+        assertThat(archive.exists()).isTrue();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            List<Path> remaining = files.toList();
+            assertThat(remaining).hasSize(1);
+            assertThat(Files.readString(remaining.get(0))).isEqualTo("first");
+        }
+    }
+
+    private static ClassDataArchive create(Path directory, String... vmArgs) throws Exception {
+        return ClassDataArchive.create(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                directory.toFile(),
+                vmArgs,
+                List.of(),
+                List.of());
+    }
+
+    @Test
+    public void testKeyIncludesRelevantVmArgs(@TempDir Path tempDir) throws Exception {
+        ClassDataArchive archive = create(tempDir);
+        assertThat(create(tempDir, "-Xmx512m", "-Dfoo=bar")).isEqualTo(archive);
+        assertThat(create(tempDir, "-XX:+UseSerialGC")).isNotEqualTo(archive);
+        assertThat(create(tempDir, "-javaagent:agent.jar")).isNotEqualTo(archive);
+        assertThat(create(tempDir, "--add-opens", "java.base/java.lang=ALL-UNNAMED"))
+                .isNotEqualTo(archive)
+                .isNotEqualTo(create(tempDir, "--add-opens", "java.base/java.io=ALL-UNNAMED"));
+    }
+
+    @Test
+    public void testGetRelevantVmArgs() {
+        assertThat(
+                        ClassDataArchive.getRelevantVmArgs(
+                                new String[] {
+                                    "-Xmx1g",
+                                    "-XX:+UseZGC",
+                                    "-XX:ActiveProcessorCount=2",
+                                    "--add-opens",
+                                    "java.base/java.lang=ALL-UNNAMED",
+                                    "--add-exports=java.base/sun.nio.ch=ALL-UNNAMED",
+                                    "-Duser.language=en",
+                                    "-agentlib:jdwp=transport=dt_socket"
+                                }))
+                .containsExactly(
+                        "-XX:+UseZGC",
+                        "--add-opens",
+                        "java.base/java.lang=ALL-UNNAMED",
+                        "--add-exports=java.base/sun.nio.ch=ALL-UNNAMED",
+                        "-agentlib:jdwp=transport=dt_socket");
+    }
+}
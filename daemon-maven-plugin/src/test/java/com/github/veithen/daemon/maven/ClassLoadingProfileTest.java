@@ -0,0 +1,83 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+
+public class ClassLoadingProfileTest {
+    public static class SlowInit {
+        static long value;
+
+        static {
+            long end = System.nanoTime() + 200_000_000L;
+            while (System.nanoTime() < end) {
+                value++;
+            }
+        }
+    }
+
+    @Test
+    public void testAnalyze(@TempDir Path tempDir) throws Exception {
+        File classes =
+                Paths.get(
+                                SlowInit.class
+                                        .getProtectionDomain()
+                                        .getCodeSource()
+                                        .getLocation()
+                                        .toURI())
+                        .toFile();
+        Path file = tempDir.resolve("test.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ClassLoad").withoutStackTrace().withThreshold(Duration.ZERO);
+            recording.enable("jdk.ClassDefine").withoutStackTrace();
+            recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(1));
+            recording.start();
+            try (URLClassLoader classLoader =
+                    new URLClassLoader(new URL[] {classes.toURI().toURL()}, null)) {
+                Class.forName(SlowInit.class.getName(), true, classLoader);
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        List<String> report =
+                ClassLoadingProfile.analyze(file, List.of(classes), Duration.ofMillis(1));
+        assertThat(report.get(0)).matches("\\d+ classes loaded; .*");
+        // The bootstrap class loader may load a few classes too, so don't assume the order.
+        assertThat(report.get(1)).startsWith("Top jars: ").contains(classes.toString());
+        assertThat(report)
+                .anyMatch(
+                        line ->
+                                line.endsWith(SlowInit.class.getName() + " (" + classes + ")")
+                                        && !line.matches(" *[0-9.]+ +0 .*"));
+    }
+}
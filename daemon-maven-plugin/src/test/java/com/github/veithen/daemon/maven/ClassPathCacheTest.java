@@ -0,0 +1,67 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ClassPathCacheTest {
+    @TempDir Path tmpDir;
+
+    @Test
+    public void test() throws Exception {
+        File jar1 = Files.writeString(tmpDir.resolve("jar1.jar"), "jar1").toFile();
+        File jar2 = Files.writeString(tmpDir.resolve("jar2.jar"), "jar2").toFile();
+        File cacheDir = tmpDir.resolve("cache").toFile();
+        List<File> classpath = Arrays.asList(jar1, jar2);
+        AtomicInteger resolutions = new AtomicInteger();
+        ClassPathCache.Resolver resolver =
+                () -> {
+                    resolutions.incrementAndGet();
+                    return classpath;
+                };
+
+        ClassPathCache cache = new ClassPathCache();
+        assertThat(cache.get(cacheDir, "key", resolver)).isEqualTo(classpath);
+        assertThat(cache.get(cacheDir, "key", resolver)).isEqualTo(classpath);
+        assertThat(resolutions).hasValue(1);
+
+        // A new instance (i.e. a new build) uses the entry stored on disk.
+        assertThat(new ClassPathCache().get(cacheDir, "key", resolver)).isEqualTo(classpath);
+        assertThat(resolutions).hasValue(1);
+
+        // Entries are invalidated when one of the files changes.
+        Files.writeString(jar2.toPath(), "updated jar2");
+        assertThat(cache.get(cacheDir, "key", resolver)).isEqualTo(classpath);
+        assertThat(resolutions).hasValue(2);
+
+        assertThat(cache.get(null, "other key", resolver)).isEqualTo(classpath);
+        assertThat(resolutions).hasValue(3);
+    }
+}
@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DaemonRegistryTest {
+    @Test
+    public void testRead(@TempDir Path tempDir) throws Exception {
+        DaemonRegistry registry = new DaemonRegistry(tempDir.toFile());
+        assertThat(registry.read("key")).isNull();
+        Files.createDirectories(registry.getRegistryFile("key").getParentFile().toPath());
+        Files.writeString(
+                registry.getRegistryFile("key").toPath(), "pid=1234\nport=5678\ntoken=abcd\n");
+        DaemonRegistry.Registration registration = registry.read("key");
+        assertThat(registration.getPid()).isEqualTo(1234);
+        assertThat(registration.getPort()).isEqualTo(5678);
+        assertThat(registration.getToken()).isEqualTo("abcd");
+        registry.delete("key");
+        assertThat(registry.read("key")).isNull();
+    }
+
+    @Test
+    public void testReadInvalid(@TempDir Path tempDir) throws Exception {
+        DaemonRegistry registry = new DaemonRegistry(tempDir.toFile());
+        Files.createDirectories(registry.getRegistryFile("key").getParentFile().toPath());
+        Files.writeString(registry.getRegistryFile("key").toPath(), "pid=1234\nport=5678\n");
+        assertThat(registry.read("key")).isNull();
+        Files.writeString(
+                registry.getRegistryFile("key").toPath(), "pid=1234\nport=xyz\ntoken=abcd\n");
+        assertThat(registry.read("key")).isNull();
+    }
+
+    @Test
+    public void testLockIsExclusive(@TempDir Path tempDir) throws Exception {
+        DaemonRegistry registry = new DaemonRegistry(tempDir.toFile());
+        Closeable lock = registry.lock("key");
+        CompletableFuture<Void> acquired;
+        try {
+            acquired =
+                    CompletableFuture.runAsync(
+                            () -> {
+                                try {
+                                    registry.lock("key").close();
+                                } catch (IOException ex) {
+                                    throw new UncheckedIOException(ex);
+                                }
+                            });
+            assertThatThrownBy(() -> acquired.get(500, TimeUnit.MILLISECONDS))
+                    .isInstanceOf(TimeoutException.class);
+            // Other slots are not affected.
+            registry.lock("other").close();
+        } finally {
+            lock.close();
+        }
+        acquired.get(10, TimeUnit.SECONDS);
+    }
+}
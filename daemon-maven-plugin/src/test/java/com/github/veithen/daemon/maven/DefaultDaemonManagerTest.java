@@ -0,0 +1,259 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+
+public class DefaultDaemonManagerTest {
+    /** A daemon that only records how often it has been released. */
+    private static final class FakeDaemon implements ManagedDaemon {
+        private final AtomicInteger releaseCount = new AtomicInteger();
+        private String fingerprint;
+
+        @Override
+        public Map<String, Integer> getPorts() {
+            return Map.of();
+        }
+
+        @Override
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        @Override
+        public void setFingerprint(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean isTestClasspathUsed() {
+            return false;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return releaseCount.get() == 0;
+        }
+
+        @Override
+        public MetricsResponse getMetrics(Duration timeout) {
+            return MetricsResponse.getDefaultInstance();
+        }
+
+        @Override
+        public void release(Duration gracefulTimeout) {
+            releaseCount.incrementAndGet();
+        }
+    }
+
+    private static DaemonSpec createSpec(Path testClasses) {
+        DaemonSpec spec = new DaemonSpec();
+        spec.setVmArgs(new String[0]);
+        spec.setTestClasspath(List.of(testClasses.toString()));
+        spec.setPorts(Map.of("http", 8080));
+        return spec;
+    }
+
+    @Test
+    public void testFingerprintIgnoresUnusedTestClasspath(@TempDir Path tempDir) throws Exception {
+        Path classes1 = Files.createDirectory(tempDir.resolve("module1"));
+        Files.writeString(classes1.resolve("Test1.class"), "1");
+        Path classes2 = Files.createDirectory(tempDir.resolve("module2"));
+        Files.writeString(classes2.resolve("Test2.class"), "2");
+        List<File> daemonClasspath = List.of();
+        DaemonSpec spec1 = createSpec(classes1);
+        DaemonSpec spec2 = createSpec(classes2);
+        assertThat(DefaultDaemonManager.fingerprint("java", spec1, daemonClasspath, null, false))
+                .isEqualTo(
+                        DefaultDaemonManager.fingerprint(
+                                "java", spec2, daemonClasspath, null, false));
+        assertThat(DefaultDaemonManager.fingerprint("java", spec1, daemonClasspath, null, true))
+                .isNotEqualTo(
+                        DefaultDaemonManager.fingerprint(
+                                "java", spec2, daemonClasspath, null, true));
+        assertThat(DefaultDaemonManager.fingerprint("java", spec1, daemonClasspath, null, false))
+                .isNotEqualTo(
+                        DefaultDaemonManager.fingerprint(
+                                "java", spec1, daemonClasspath, null, true));
+    }
+
+    /**
+     * Tests that the capacity reserved by admission control for a reused daemon is accounted to the
+     * project that reuses it, so that the daemons of that project are not queued behind it.
+     */
+    @Test
+    public void testReuseTransfersAdmission() throws Exception {
+        Logger logger = new ConsoleLogger(Logger.LEVEL_INFO, "test");
+        DefaultDaemonManager manager = new DefaultDaemonManager(logger);
+        AdmissionScheduler scheduler = new AdmissionScheduler(logger, 1024, 4, 256);
+        MavenProject project1 = new MavenProject();
+        MavenProject project2 = new MavenProject();
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            LauncherProcess launcher =
+                    LauncherProcess.attach(
+                            process.toHandle(),
+                            serverSocket.getLocalPort(),
+                            Duration.ofSeconds(10));
+            Socket socket = serverSocket.accept();
+            try {
+                RemoteDaemon daemon =
+                        new RemoteDaemon(
+                                logger,
+                                "test",
+                                launcher,
+                                List.of(),
+                                List.of(),
+                                Map.of(),
+                                new StartupTiming());
+                daemon.setFingerprint("test");
+                manager.track(process.toHandle(), scheduler.admit(project1, "test", 768, 1, null));
+                manager.addIdleDaemon(daemon);
+                assertThat(manager.takeIdleDaemon(project2, List.of("other"))).isNull();
+                assertThat(manager.takeIdleDaemon(project2, List.of("test"))).isSameAs(daemon);
+                CompletableFuture<AdmissionScheduler.Admission> admission =
+                        CompletableFuture.supplyAsync(
+                                () -> {
+                                    try {
+                                        return scheduler.admit(project2, "test2", 768, 1, null);
+                                    } catch (InterruptedException ex) {
+                                        throw new RuntimeException(ex);
+                                    }
+                                });
+                admission.get(10, TimeUnit.SECONDS).release();
+            } finally {
+                socket.close();
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Tests that projects built concurrently can register and stop their daemons at the same time,
+     * and that each project only stops its own daemons.
+     */
+    @Test
+    public void testConcurrentProjects() throws Throwable {
+        DefaultDaemonManager manager =
+                new DefaultDaemonManager(new ConsoleLogger(Logger.LEVEL_INFO, "test"));
+        int projectCount = 8;
+        List<MavenProject> projects = new ArrayList<>();
+        Map<MavenProject, List<FakeDaemon>> daemons = new HashMap<>();
+        for (int i = 0; i < projectCount; i++) {
+            MavenProject project = new MavenProject();
+            project.setArtifactId("project" + i);
+            projects.add(project);
+            List<FakeDaemon> projectDaemons = new ArrayList<>();
+            for (int j = 0; j < 50; j++) {
+                projectDaemons.add(new FakeDaemon());
+            }
+            daemons.put(project, projectDaemons);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(projectCount);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(projectCount);
+            List<Future<?>> futures = new ArrayList<>();
+            // The last project only registers its daemons; the others stop theirs concurrently.
+            for (MavenProject project : projects) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    barrier.await();
+                                    for (FakeDaemon daemon : daemons.get(project)) {
+                                        manager.register(project, daemon);
+                                    }
+                                    barrier.await();
+                                    if (project != projects.get(projectCount - 1)) {
+                                        try {
+                                            manager.stopAll(project, false, Duration.ofSeconds(1));
+                                        } catch (Throwable ex) {
+                                            throw new ExecutionException(ex);
+                                        }
+                                    }
+                                    return null;
+                                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < projectCount; i++) {
+            int expectedReleaseCount = i == projectCount - 1 ? 0 : 1;
+            assertThat(daemons.get(projects.get(i)))
+                    .allSatisfy(
+                            daemon ->
+                                    assertThat(daemon.releaseCount.get())
+                                            .isEqualTo(expectedReleaseCount));
+        }
+        manager.stopAll(projects.get(projectCount - 1), true, Duration.ofSeconds(1));
+        assertThat(daemons.get(projects.get(projectCount - 1)))
+                .allSatisfy(daemon -> assertThat(daemon.releaseCount.get()).isEqualTo(1));
+    }
+
+    /** Tests that daemons kept for reuse are only stopped when the last project stops. */
+    @Test
+    public void testReusableDaemonsKeptUntilLastProject() throws Throwable {
+        DefaultDaemonManager manager =
+                new DefaultDaemonManager(new ConsoleLogger(Logger.LEVEL_INFO, "test"));
+        MavenProject project1 = new MavenProject();
+        MavenProject project2 = new MavenProject();
+        FakeDaemon reusable = new FakeDaemon();
+        reusable.setFingerprint("test");
+        FakeDaemon other = new FakeDaemon();
+        manager.register(project1, reusable);
+        manager.register(project1, other);
+        manager.stopAll(project1, false, Duration.ofSeconds(1));
+        assertThat(reusable.releaseCount.get()).isEqualTo(0);
+        assertThat(other.releaseCount.get()).isEqualTo(1);
+        manager.stopAll(project2, true, Duration.ofSeconds(1));
+        assertThat(reusable.releaseCount.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import com.github.veithen.daemon.launcher.proto.DaemonRequest;
+import com.github.veithen.daemon.launcher.proto.DaemonRequest.RequestCase;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse;
+import com.github.veithen.daemon.launcher.proto.MessageReader;
+import com.github.veithen.daemon.launcher.proto.MessageWriter;
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+
+/** Serves a fixed metrics snapshot in the same way as the monitor port of a launcher. */
+public class FakeMonitor implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final MetricsResponse metrics;
+
+    public FakeMonitor(MetricsResponse metrics) throws IOException {
+        serverSocket = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        this.metrics = metrics;
+        Thread thread = new Thread(this::run, "fake-monitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void run() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                MessageReader<DaemonRequest, RequestCase> reader =
+                        new MessageReader<>(
+                                socket.getInputStream(),
+                                DaemonRequest.parser(),
+                                DaemonRequest::getRequestCase);
+                MessageWriter<DaemonResponse> writer =
+                        new MessageWriter<>(socket.getOutputStream());
+                while (reader.readNext() != null) {
+                    writer.write(DaemonResponse.newBuilder().setMetrics(metrics).build());
+                }
+            } catch (IOException ex) {
+                // The client went away or the monitor has been closed
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,52 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+public class FlightRecordingTest {
+    @Test
+    public void testSummarize(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("test.jfr");
+        try (Recording recording = new Recording(Configuration.getConfiguration("profile"))) {
+            recording.start();
+            recording.dump(file);
+        }
+        assertThat(Files.exists(file)).isTrue();
+        List<String> summary = FlightRecording.summarize(file);
+        assertThat(summary).hasSize(3);
+        // The recorded events depend on the workload and the JVM; only check the format.
+        assertThat(summary.get(0))
+                .matches("GC: \\d+ collections, [\\d.]+ ms total pause, [\\d.]+ ms longest pause");
+        assertThat(summary.get(1))
+                .matches("Allocation: [\\d.]+ MB \\(estimated from samples\\)(; top classes: .+)?");
+        assertThat(summary.get(2)).matches("Hot methods \\(\\d+ samples\\)(: .+)?");
+    }
+}
@@ -0,0 +1,58 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+
+public class FootprintTest {
+    @Test
+    public void testResidentSetSize() {
+        Footprint footprint =
+                Footprint.of(
+                        MetricsResponse.newBuilder()
+                                .putGauges("jvm.rss", 300 << 20)
+                                .putGauges("jvm.heap.committed", 100 << 20)
+                                .setNativeMemorySummary(
+                                        "\nNative Memory Tracking:\n\n"
+                                                + "Total: reserved=1000000KB, committed=204800KB\n")
+                                .build());
+        assertThat(footprint.getTotal()).isEqualTo(300 << 20);
+        assertThat(footprint.toString())
+                .startsWith("RSS 300.0 MB, heap 0.0 MB used / 100.0 MB committed")
+                .endsWith(", native memory 200.0 MB committed");
+    }
+
+    @Test
+    public void testEstimate() {
+        Footprint footprint =
+                Footprint.of(
+                        MetricsResponse.newBuilder()
+                                .putGauges("jvm.heap.committed", 100 << 20)
+                                .putGauges("jvm.metaspace.used", 20 << 20)
+                                .putGauges("jvm.codecache.used", 10 << 20)
+                                .build());
+        assertThat(footprint.getTotal()).isEqualTo(130 << 20);
+        assertThat(footprint.toString()).startsWith("RSS unknown");
+    }
+}
@@ -0,0 +1,96 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class LauncherCommandTest {
+    private static LauncherCommand createCommand(String cpuSet) {
+        return new LauncherCommand(
+                "java",
+                new String[] {"-Xmx64m"},
+                new File("."),
+                List.of(new File("launcher.jar")),
+                null,
+                null,
+                cpuSet,
+                null);
+    }
+
+    @Test
+    public void testCommandLine() {
+        assertThat(createCommand(null).toCommandLine(1234, null))
+                .containsExactly(
+                        "java",
+                        "-cp",
+                        "launcher.jar",
+                        "-Xmx64m",
+                        "com.github.veithen.daemon.launcher.Launcher",
+                        "1234");
+    }
+
+    @Test
+    public void testCommandLineWithCpuSet() {
+        assertThat(createCommand("0-3,8").toCommandLine(1234, null))
+                .containsExactly(
+                        "taskset",
+                        "-c",
+                        "0-3,8",
+                        "java",
+                        "-cp",
+                        "launcher.jar",
+                        "-Xmx64m",
+                        "com.github.veithen.daemon.launcher.Launcher",
+                        "1234");
+    }
+
+    @Test
+    public void testCpuSetIsPartOfIdentity() {
+        assertThat(createCommand("0-3")).isEqualTo(createCommand("0-3"));
+        assertThat(createCommand("0-3")).isNotEqualTo(createCommand("4-7"));
+        assertThat(createCommand("0-3")).isNotEqualTo(createCommand(null));
+    }
+
+    @Test
+    public void testCommandLineWithLogFile() {
+        LauncherCommand command =
+                new LauncherCommand(
+                        "java",
+                        new String[] {"-Dstdout.encoding=ISO-8859-1"},
+                        new File("."),
+                        List.of(new File("launcher.jar")),
+                        null,
+                        null,
+                        null,
+                        new OutputSettings(new File("logs"), "jetty", 5, "WARN", 100));
+        // The encoding expected by the supervisor takes precedence over the configured VM args.
+        assertThat(command.toCommandLine(1234, null))
+                .containsSubsequence(
+                        "-Dstdout.encoding=ISO-8859-1",
+                        "-Dstdout.encoding=UTF-8",
+                        "-Dstderr.encoding=UTF-8",
+                        "com.github.veithen.daemon.launcher.Launcher");
+    }
+}
@@ -0,0 +1,167 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LauncherPoolTest {
+    private static final String[] VM_ARGS = {"-Xmx64m"};
+
+    private final Logger logger = new ConsoleLogger(Logger.LEVEL_INFO, "test");
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<ProcessHandle, AdmissionScheduler.Admission> admissions =
+            new ConcurrentHashMap<>();
+    private final List<LauncherProcess> launchers = new ArrayList<>();
+    private LauncherSupervisor supervisor;
+    private AdmissionScheduler scheduler;
+    private LauncherPool pool;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        supervisor = new LauncherSupervisor(logger);
+        // Enough capacity for two launchers.
+        scheduler = new AdmissionScheduler(logger, 128 << 20, 4, 256 << 20);
+        pool =
+                new LauncherPool(
+                        logger,
+                        executor,
+                        supervisor,
+                        scheduler,
+                        (process, admission) -> {
+                            admissions.put(process, admission);
+                            process.onExit().thenRun(admission::release);
+                        });
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        pool.shutdown();
+        for (LauncherProcess launcher : launchers) {
+            launcher.close();
+            launcher.getProcess().onExit().get();
+        }
+        executor.shutdown();
+        supervisor.close();
+    }
+
+    private static LauncherCommand createCommand(Path workDir) {
+        List<File> classpath = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            classpath.add(new File(entry));
+        }
+        return new LauncherCommand(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                VM_ARGS,
+                workDir.toFile(),
+                classpath,
+                null,
+                null,
+                null,
+                null);
+    }
+
+    private LauncherProcess poll(LauncherCommand command, Object owner) throws Exception {
+        LauncherProcess launcher = pool.poll(command, owner);
+        if (launcher != null) {
+            launchers.add(launcher);
+        }
+        return launcher;
+    }
+
+    @Test
+    public void testReuse(@TempDir Path tempDir) throws Exception {
+        LauncherCommand command = createCommand(tempDir);
+        Object owner = new Object();
+        assertThat(poll(command, owner)).isNull();
+        pool.refill(command, 1, true);
+        LauncherProcess launcher = poll(command, owner);
+        assertThat(launcher).isNotNull();
+        assertThat(launcher.getProcess().isAlive()).isTrue();
+        // The launcher isn't handed out twice, and the pool isn't refilled implicitly.
+        assertThat(poll(command, owner)).isNull();
+        // A launcher for a different command can't be used.
+        pool.refill(command, 1, true);
+        assertThat(poll(createCommand(tempDir.resolve("..")), owner)).isNull();
+        LauncherProcess launcher2 = poll(command, owner);
+        assertThat(launcher2).isNotNull();
+        assertThat(launcher2.getProcess().pid()).isNotEqualTo(launcher.getProcess().pid());
+    }
+
+    @Test
+    public void testRefillIsLimitedByCapacity(@TempDir Path tempDir) throws Exception {
+        LauncherCommand command = createCommand(tempDir);
+        pool.refill(command, 3, true);
+        // Only two launchers fit in the budget, and they leave no capacity to other owners.
+        assertThat(scheduler.tryAdmit(new Object(), VM_ARGS)).isNull();
+        Object owner = new Object();
+        LauncherProcess launcher1 = poll(command, owner);
+        LauncherProcess launcher2 = poll(command, owner);
+        assertThat(launcher1).isNotNull();
+        assertThat(launcher2).isNotNull();
+        assertThat(poll(command, owner)).isNull();
+        // The capacity is now held by the owner; it is released when the launcher terminates.
+        pool.refill(command, 1, true);
+        assertThat(poll(command, owner)).isNull();
+        launcher1.close();
+        launcher1.getProcess().onExit().get();
+        // The release triggered by the termination is asynchronous.
+        admissions.get(launcher1.getProcess()).release();
+        pool.refill(command, 1, true);
+        assertThat(poll(command, owner)).isNotNull();
+    }
+
+    @Test
+    public void testCapacityReleasedWithoutAdmissionControl(@TempDir Path tempDir)
+            throws Exception {
+        LauncherCommand command = createCommand(tempDir);
+        pool.refill(command, 2, true);
+        assertThat(poll(command, null)).isNotNull();
+        AdmissionScheduler.Admission admission = scheduler.tryAdmit(new Object(), VM_ARGS);
+        assertThat(admission).isNotNull();
+        admission.release();
+    }
+
+    @Test
+    public void testRefillWithoutAdmissionControl(@TempDir Path tempDir) throws Exception {
+        LauncherCommand command = createCommand(tempDir);
+        pool.refill(command, 3, false);
+        for (int i = 0; i < 3; i++) {
+            assertThat(poll(command, null)).isNotNull();
+        }
+        assertThat(admissions).isEmpty();
+    }
+}
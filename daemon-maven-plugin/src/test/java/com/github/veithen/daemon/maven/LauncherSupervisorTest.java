@@ -0,0 +1,201 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.logging.AbstractLogger;
+import org.codehaus.plexus.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LauncherSupervisorTest {
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    /** Records the messages logged at info level. */
+    private final Logger logger =
+            new AbstractLogger(Logger.LEVEL_INFO, "test") {
+                @Override
+                public void debug(String message, Throwable throwable) {}
+
+                @Override
+                public void info(String message, Throwable throwable) {
+                    messages.add(message);
+                }
+
+                @Override
+                public void warn(String message, Throwable throwable) {}
+
+                @Override
+                public void error(String message, Throwable throwable) {}
+
+                @Override
+                public void fatalError(String message, Throwable throwable) {}
+
+                @Override
+                public Logger getChildLogger(String name) {
+                    return this;
+                }
+            };
+
+    @TempDir Path logDirectory;
+
+    private LauncherSupervisor supervisor;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        supervisor = new LauncherSupervisor(logger);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        supervisor.close();
+    }
+
+    private static ServerSocketChannel openServerChannel() throws Exception {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return serverChannel;
+    }
+
+    @Test
+    public void testAccept() throws Exception {
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try (ServerSocketChannel serverChannel = openServerChannel()) {
+            CompletableFuture<SocketChannel> future = supervisor.accept(serverChannel, process);
+            assertThat(future).isNotDone();
+            try (SocketChannel client = SocketChannel.open(serverChannel.getLocalAddress());
+                    SocketChannel channel = future.get(10, TimeUnit.SECONDS)) {
+                assertThat(channel.isBlocking()).isTrue();
+                assertThat(channel.getRemoteAddress()).isEqualTo(client.getLocalAddress());
+            }
+            // The termination of the process has no effect once the launcher has connected.
+            process.destroy();
+            process.onExit().get();
+            assertThat(future.isCompletedExceptionally()).isFalse();
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    @Test
+    public void testProcessExit() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "exit 3").start();
+        try (ServerSocketChannel serverChannel = openServerChannel()) {
+            CompletableFuture<SocketChannel> future = supervisor.accept(serverChannel, process);
+            assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause()
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("exit code 3");
+        }
+    }
+
+    @Test
+    public void testMultipleLaunchers() throws Exception {
+        Process process1 = new ProcessBuilder("sleep", "60").start();
+        Process process2 = new ProcessBuilder("sh", "-c", "exit 1").start();
+        try (ServerSocketChannel serverChannel1 = openServerChannel();
+                ServerSocketChannel serverChannel2 = openServerChannel()) {
+            CompletableFuture<SocketChannel> future1 = supervisor.accept(serverChannel1, process1);
+            CompletableFuture<SocketChannel> future2 = supervisor.accept(serverChannel2, process2);
+            assertThatThrownBy(() -> future2.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class);
+            // The failure of one launcher doesn't affect the others.
+            try (SocketChannel client = SocketChannel.open(serverChannel1.getLocalAddress());
+                    SocketChannel channel = future1.get(10, TimeUnit.SECONDS)) {
+                assertThat(channel.getRemoteAddress()).isEqualTo(client.getLocalAddress());
+            }
+        } finally {
+            process1.destroyForcibly();
+        }
+    }
+
+    private static void append(File file, String content) throws Exception {
+        Files.writeString(
+                file.toPath(), content, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    private void awaitMessage(String message) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!messages.contains(message)) {
+            assertThat(System.nanoTime()).as("Timeout waiting for " + message).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testMirror() throws Exception {
+        OutputSettings settings =
+                new OutputSettings(logDirectory.toFile(), "jetty", 5, "WARN|ERROR", 100);
+        File logFile = settings.newLogFile();
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try {
+            supervisor.mirror(logFile, settings, process);
+            append(logFile, "INFO Started\nWARN Caf\u00e9 closed\r\n");
+            awaitMessage("[jetty] WARN Caf\u00e9 closed");
+            // A line without terminator is emitted when the launcher terminates.
+            append(logFile, "INFO Stopping\nERROR Failed");
+            process.destroy();
+            awaitMessage("[jetty] ERROR Failed");
+            assertThat(messages)
+                    .containsExactly("[jetty] WARN Caf\u00e9 closed", "[jetty] ERROR Failed");
+        } finally {
+            process.destroyForcibly();
+            OutputSettings.release(logFile);
+        }
+    }
+
+    @Test
+    public void testMirrorRateLimit() throws Exception {
+        OutputSettings settings = new OutputSettings(logDirectory.toFile(), "jetty", 5, ".", 2);
+        File logFile = settings.newLogFile();
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try {
+            append(logFile, "line 1\nline 2\nline 3\n\nline 4\nline 5\n");
+            supervisor.mirror(logFile, settings, process);
+            process.destroy();
+            String summary = "[jetty] (3 lines suppressed; see " + logFile + ")";
+            awaitMessage(summary);
+            assertThat(messages).containsExactly("[jetty] line 1", "[jetty] line 2", summary);
+        } finally {
+            process.destroyForcibly();
+            OutputSettings.release(logFile);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class MemorySizeTest {
+    @Test
+    public void testParse() {
+        assertThat(MemorySize.parse("1024")).isEqualTo(1024);
+        assertThat(MemorySize.parse("64k")).isEqualTo(64L << 10);
+        assertThat(MemorySize.parse("512m")).isEqualTo(512L << 20);
+        assertThat(MemorySize.parse("2G")).isEqualTo(2L << 30);
+        assertThat(MemorySize.parse("1t")).isEqualTo(1L << 40);
+    }
+
+    @Test
+    public void testParseInvalid() {
+        assertThat(MemorySize.parse("")).isEqualTo(-1);
+        assertThat(MemorySize.parse("m")).isEqualTo(-1);
+        assertThat(MemorySize.parse("12x")).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OutputSettingsTest {
+    @TempDir Path directory;
+
+    @Test
+    public void testRetention() throws Exception {
+        OutputSettings settings = new OutputSettings(directory.toFile(), "jetty", 2, null, 10);
+        File[] files = new File[4];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = settings.newLogFile();
+            OutputSettings.release(files[i]);
+        }
+        assertThat(directory.toFile().listFiles()).containsExactlyInAnyOrder(files[2], files[3]);
+    }
+
+    @Test
+    public void testActiveLogFileIsKept() throws Exception {
+        OutputSettings settings = new OutputSettings(directory.toFile(), "jetty", 1, null, 10);
+        File active = settings.newLogFile();
+        File file2 = settings.newLogFile();
+        OutputSettings.release(file2);
+        File file3 = settings.newLogFile();
+        OutputSettings.release(file3);
+        assertThat(directory.toFile().listFiles()).containsExactlyInAnyOrder(active, file3);
+        OutputSettings.release(active);
+        File file4 = settings.newLogFile();
+        OutputSettings.release(file4);
+        assertThat(directory.toFile().listFiles()).containsExactly(file4);
+    }
+
+    @Test
+    public void testRetentionOrdersFilesWithSameTimestamp() throws Exception {
+        String[] existing = {
+            "jetty-20250101-120000-000.log",
+            "jetty-20250101-120000-000-1.log",
+            "jetty-20250101-120000-000-2.log",
+            "other-20250101-120000-000.log",
+            "jetty.txt"
+        };
+        for (String name : existing) {
+            Files.createFile(directory.resolve(name));
+        }
+        OutputSettings settings = new OutputSettings(directory.toFile(), "jetty", 2, null, 10);
+        File file = settings.newLogFile();
+        OutputSettings.release(file);
+        assertThat(directory.toFile().listFiles())
+                .containsExactlyInAnyOrder(
+                        directory.resolve("jetty-20250101-120000-000-2.log").toFile(),
+                        directory.resolve("other-20250101-120000-000.log").toFile(),
+                        directory.resolve("jetty.txt").toFile(),
+                        file);
+    }
+}
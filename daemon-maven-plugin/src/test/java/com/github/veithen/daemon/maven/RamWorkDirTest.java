@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RamWorkDirTest {
+    private static final String[] INCLUDES = {"**/*.log"};
+
+    @TempDir Path ramDisk;
+
+    @TempDir Path diskDirectory;
+
+    private RamWorkDir create(String executionId, boolean shared) throws Exception {
+        return RamWorkDir.create(
+                ramDisk.toFile(), diskDirectory.toFile(), executionId, 1 << 20, INCLUDES, shared);
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+        RamWorkDir workDir = create("start", false);
+        assertThat(workDir.getDirectory()).isDirectory();
+        assertThat(workDir.getDirectory().toPath()).startsWith(ramDisk);
+        // The location is stable so that persistent daemons can be found again.
+        assertThat(create("start", true).getDirectory()).isEqualTo(workDir.getDirectory());
+    }
+
+    @Test
+    public void testCreateInsufficientSpace() throws Exception {
+        assertThat(
+                        RamWorkDir.create(
+                                ramDisk.toFile(),
+                                diskDirectory.toFile(),
+                                "start",
+                                Long.MAX_VALUE,
+                                INCLUDES,
+                                false))
+                .isNull();
+    }
+
+    @Test
+    public void testTwoExecutions() throws Exception {
+        RamWorkDir workDir1 = create("start-1", false);
+        Path file1 = workDir1.getDirectory().toPath().resolve("daemon1.log");
+        Files.writeString(file1, "daemon1");
+        RamWorkDir workDir2 = create("start-2", false);
+        assertThat(workDir2.getDirectory()).isNotEqualTo(workDir1.getDirectory());
+        // Creating the second directory must not clean the first one.
+        assertThat(file1).exists();
+        Files.writeString(workDir2.getDirectory().toPath().resolve("daemon2.log"), "daemon2");
+        assertThat(workDir1.release()).isEqualTo(1);
+        assertThat(workDir2.release()).isEqualTo(1);
+        assertThat(diskDirectory.resolve("daemon1.log")).hasContent("daemon1");
+        assertThat(diskDirectory.resolve("daemon2.log")).hasContent("daemon2");
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        RamWorkDir workDir = create("start", false);
+        Path directory = workDir.getDirectory().toPath();
+        Files.createDirectories(directory.resolve("logs"));
+        Files.writeString(directory.resolve("logs/server.log"), "log");
+        Files.writeString(directory.resolve("scratch.tmp"), "scratch");
+        assertThat(workDir.getSize()).isEqualTo(10);
+        assertThat(workDir.release()).isEqualTo(1);
+        assertThat(diskDirectory.resolve("logs/server.log")).hasContent("log");
+        assertThat(diskDirectory.resolve("scratch.tmp")).doesNotExist();
+        assertThat(directory).doesNotExist();
+    }
+
+    @Test
+    public void testReleaseShared() throws Exception {
+        RamWorkDir workDir = create("start", true);
+        File directory = workDir.getDirectory();
+        Files.writeString(directory.toPath().resolve("server.log"), "log");
+        assertThat(workDir.release()).isEqualTo(1);
+        assertThat(diskDirectory.resolve("server.log")).hasContent("log");
+        // Reused and persistent daemons may still be using the directory.
+        assertThat(directory).isDirectory();
+        // A subsequent build starts with the existing content.
+        assertThat(create("start", true).getDirectory().toPath().resolve("server.log")).exists();
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        MavenProject project = new MavenProject();
+        RamWorkDir workDir1 = create("start-1", false);
+        RamWorkDir workDir2 = create("start-2", false);
+        RamWorkDir.register(project, workDir1);
+        RamWorkDir.register(project, workDir2);
+        assertThat(RamWorkDir.unregisterAll(project)).containsExactly(workDir1, workDir2);
+        assertThat(RamWorkDir.unregisterAll(project)).isEmpty();
+    }
+}
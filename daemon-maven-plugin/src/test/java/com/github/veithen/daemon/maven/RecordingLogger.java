@@ -0,0 +1,83 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.codehaus.plexus.logging.AbstractLogger;
+import org.codehaus.plexus.logging.Logger;
+
+/** Records the enabled messages, prefixed with their level. */
+public class RecordingLogger extends AbstractLogger {
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    public RecordingLogger(int threshold) {
+        super(threshold, "test");
+    }
+
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    private void record(String level, String message) {
+        messages.add(level + " " + message);
+    }
+
+    @Override
+    public void debug(String message, Throwable throwable) {
+        if (isDebugEnabled()) {
+            record("DEBUG", message);
+        }
+    }
+
+    @Override
+    public void info(String message, Throwable throwable) {
+        if (isInfoEnabled()) {
+            record("INFO", message);
+        }
+    }
+
+    @Override
+    public void warn(String message, Throwable throwable) {
+        if (isWarnEnabled()) {
+            record("WARN", message);
+        }
+    }
+
+    @Override
+    public void error(String message, Throwable throwable) {
+        if (isErrorEnabled()) {
+            record("ERROR", message);
+        }
+    }
+
+    @Override
+    public void fatalError(String message, Throwable throwable) {
+        if (isFatalErrorEnabled()) {
+            record("FATAL", message);
+        }
+    }
+
+    @Override
+    public Logger getChildLogger(String name) {
+        return this;
+    }
+}
@@ -0,0 +1,363 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.veithen.daemon.launcher.proto.AttachRequest;
+import com.github.veithen.daemon.launcher.proto.AttachResponse;
+import com.github.veithen.daemon.launcher.proto.DaemonRequest;
+import com.github.veithen.daemon.launcher.proto.DaemonRequest.RequestCase;
+import com.github.veithen.daemon.launcher.proto.DaemonResponse;
+import com.github.veithen.daemon.launcher.proto.InitResponse;
+import com.github.veithen.daemon.launcher.proto.LogBatch;
+import com.github.veithen.daemon.launcher.proto.LogRecord;
+import com.github.veithen.daemon.launcher.proto.MessageReader;
+import com.github.veithen.daemon.launcher.proto.MessageWriter;
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Timestamp;
+
+public class RemoteDaemonTest {
+    /**
+     * Tests that a daemon that doesn't respond to the {@code STOP} message is destroyed once the
+     * graceful timeout expires, instead of failing the stop.
+     */
+    @Test
+    public void testStopTimeout() throws Exception {
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            LauncherProcess launcher =
+                    LauncherProcess.attach(
+                            process.toHandle(),
+                            serverSocket.getLocalPort(),
+                            Duration.ofSeconds(10));
+            // The fake launcher accepts the control connection, but never responds.
+            Socket socket = serverSocket.accept();
+            try {
+                RemoteDaemon daemon =
+                        new RemoteDaemon(
+                                new ConsoleLogger(Logger.LEVEL_INFO, "test"),
+                                "test",
+                                launcher,
+                                List.of(),
+                                List.of(),
+                                Map.of(),
+                                new StartupTiming());
+                long start = System.nanoTime();
+                daemon.stop(Duration.ofMillis(500));
+                assertThat(process.isAlive()).isFalse();
+                assertThat(Duration.ofNanos(System.nanoTime() - start))
+                        .isLessThan(Duration.ofSeconds(10));
+            } finally {
+                socket.close();
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    /** Tests that a daemon that doesn't start within the start timeout is destroyed. */
+    @Test
+    public void testStartTimeout(@TempDir Path tempDir) throws Exception {
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            LauncherProcess launcher =
+                    LauncherProcess.attach(
+                            process.toHandle(),
+                            serverSocket.getLocalPort(),
+                            Duration.ofSeconds(10));
+            Socket socket = serverSocket.accept();
+            try {
+                RemoteDaemon daemon =
+                        new RemoteDaemon(
+                                new ConsoleLogger(Logger.LEVEL_INFO, "test"),
+                                "test",
+                                launcher,
+                                List.of(),
+                                List.of(),
+                                Map.of(),
+                                new StartupTiming());
+                assertThatThrownBy(
+                                () ->
+                                        daemon.start(
+                                                ByteString.EMPTY,
+                                                null,
+                                                null,
+                                                null,
+                                                null,
+                                                new Watchdog(
+                                                        Duration.ZERO,
+                                                        Duration.ofMillis(500),
+                                                        tempDir.toFile())))
+                        .isInstanceOf(IllegalStateException.class)
+                        .hasMessageContaining("didn't start within 500 ms");
+                assertThat(process.waitFor(10, TimeUnit.SECONDS)).isTrue();
+            } finally {
+                socket.close();
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    /** Tests that the attach token from the registry file is sent in the {@code ATTACH} message. */
+    @Test
+    public void testAttachSendsToken() throws Exception {
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            LauncherProcess launcher =
+                    LauncherProcess.attach(
+                            process.toHandle(),
+                            serverSocket.getLocalPort(),
+                            Duration.ofSeconds(10));
+            Socket socket = serverSocket.accept();
+            try {
+                RemoteDaemon daemon =
+                        new RemoteDaemon(
+                                new ConsoleLogger(Logger.LEVEL_INFO, "test"),
+                                "test",
+                                launcher,
+                                List.of(),
+                                List.of(),
+                                Map.of(),
+                                new StartupTiming());
+                // The fake launcher returns a well-known message type as configuration type.
+                Descriptor descriptor = Timestamp.getDescriptor();
+                DaemonResponse response =
+                        DaemonResponse.newBuilder()
+                                .setAttach(
+                                        AttachResponse.newBuilder()
+                                                .setInit(
+                                                        InitResponse.newBuilder()
+                                                                .setConfigurationType(
+                                                                        descriptor.getName())
+                                                                .setFileDescriptor(
+                                                                        descriptor
+                                                                                .getFile()
+                                                                                .toProto())))
+                                .build();
+                CompletableFuture<String> token =
+                        CompletableFuture.supplyAsync(
+                                () -> {
+                                    try {
+                                        AttachRequest request =
+                                                new MessageReader<>(
+                                                                socket.getInputStream(),
+                                                                DaemonRequest.parser(),
+                                                                DaemonRequest::getRequestCase)
+                                                        .read(RequestCase.ATTACH)
+                                                        .getAttach();
+                                        new MessageWriter<DaemonResponse>(socket.getOutputStream())
+                                                .write(response);
+                                        return request.getToken();
+                                    } catch (IOException ex) {
+                                        throw new UncheckedIOException(ex);
+                                    }
+                                });
+                assertThat(daemon.attach("secret").getFullName())
+                        .isEqualTo(descriptor.getFullName());
+                assertThat(token.get(10, TimeUnit.SECONDS)).isEqualTo("secret");
+                assertThat(daemon.isPersistent()).isTrue();
+            } finally {
+                socket.close();
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    private static LogRecord createLogRecord(Level level, String message) {
+        return LogRecord.newBuilder()
+                .setLevel(level.intValue())
+                .setThread("main")
+                .setLogger("org.example.Server")
+                .setMessage(message)
+                .build();
+    }
+
+    private static List<String> log(int threshold, LogBatch batch) throws Exception {
+        RecordingLogger logger = new RecordingLogger(threshold);
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            LauncherProcess launcher =
+                    LauncherProcess.attach(
+                            process.toHandle(),
+                            serverSocket.getLocalPort(),
+                            Duration.ofSeconds(10));
+            Socket socket = serverSocket.accept();
+            try {
+                new RemoteDaemon(
+                                logger,
+                                "jetty",
+                                launcher,
+                                List.of(),
+                                List.of(),
+                                Map.of(),
+                                new StartupTiming())
+                        .log(batch);
+            } finally {
+                socket.close();
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+        return logger.getMessages();
+    }
+
+    /** Tests that streamed log records are mapped to the corresponding Maven log levels. */
+    @Test
+    public void testLog() throws Exception {
+        LogBatch batch =
+                LogBatch.newBuilder()
+                        .addRecord(
+                                createLogRecord(Level.SEVERE, "Failed").toBuilder()
+                                        .setThrown("java.io.IOException: Broken pipe\n"))
+                        .addRecord(createLogRecord(Level.WARNING, "Slow"))
+                        .addRecord(createLogRecord(Level.INFO, "Started"))
+                        .addRecord(createLogRecord(Level.FINE, "Details"))
+                        .addRecord(
+                                LogRecord.newBuilder()
+                                        .setLevel(Level.CONFIG.intValue())
+                                        .setThread("main")
+                                        .setMessage("No logger"))
+                        .build();
+        assertThat(log(Logger.LEVEL_DEBUG, batch))
+                .containsExactly(
+                        "ERROR [jetty] [main] org.example.Server - Failed"
+                                + System.lineSeparator()
+                                + "java.io.IOException: Broken pipe",
+                        "WARN [jetty] [main] org.example.Server - Slow",
+                        "INFO [jetty] [main] org.example.Server - Started",
+                        "DEBUG [jetty] [main] org.example.Server - Details",
+                        "DEBUG [jetty] [main] No logger");
+        assertThat(log(Logger.LEVEL_WARN, batch))
+                .containsExactly(
+                        "ERROR [jetty] [main] org.example.Server - Failed"
+                                + System.lineSeparator()
+                                + "java.io.IOException: Broken pipe",
+                        "WARN [jetty] [main] org.example.Server - Slow");
+    }
+
+    /** Tests that the number of records dropped by the launcher is reported. */
+    @Test
+    public void testLogDropped() throws Exception {
+        assertThat(
+                        log(
+                                Logger.LEVEL_INFO,
+                                LogBatch.newBuilder()
+                                        .addRecord(createLogRecord(Level.INFO, "Started"))
+                                        .setDropped(42)
+                                        .build()))
+                .containsExactly(
+                        "INFO [jetty] [main] org.example.Server - Started",
+                        "WARN [jetty] 42 log records have been dropped");
+        assertThat(log(Logger.LEVEL_INFO, LogBatch.getDefaultInstance())).isEmpty();
+    }
+
+    /**
+     * Tests that a {@code METRICS} response arriving after the timeout doesn't end up as the
+     * response to a subsequent request.
+     */
+    @Test
+    public void testMetricsTimeout() throws Exception {
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            LauncherProcess launcher =
+                    LauncherProcess.attach(
+                            process.toHandle(),
+                            serverSocket.getLocalPort(),
+                            Duration.ofSeconds(10));
+            Socket socket = serverSocket.accept();
+            try {
+                RemoteDaemon daemon =
+                        new RemoteDaemon(
+                                new ConsoleLogger(Logger.LEVEL_INFO, "test"),
+                                "test",
+                                launcher,
+                                List.of(),
+                                List.of(),
+                                Map.of(),
+                                new StartupTiming());
+                CompletableFuture<Void> timedOut = new CompletableFuture<>();
+                // The fake launcher answers the first request only after the client gave up.
+                CompletableFuture<Void> fakeLauncher =
+                        CompletableFuture.runAsync(
+                                () -> {
+                                    try {
+                                        MessageReader<DaemonRequest, RequestCase> reader =
+                                                new MessageReader<>(
+                                                        socket.getInputStream(),
+                                                        DaemonRequest.parser(),
+                                                        DaemonRequest::getRequestCase);
+                                        MessageWriter<DaemonResponse> writer =
+                                                new MessageWriter<>(socket.getOutputStream());
+                                        for (long i = 1; i <= 2; i++) {
+                                            reader.read(RequestCase.METRICS);
+                                            if (i == 1) {
+                                                timedOut.join();
+                                            }
+                                            writer.write(
+                                                    DaemonResponse.newBuilder()
+                                                            .setMetrics(
+                                                                    MetricsResponse.newBuilder()
+                                                                            .putCounters(
+                                                                                    "request", i))
+                                                            .build());
+                                        }
+                                    } catch (IOException ex) {
+                                        throw new UncheckedIOException(ex);
+                                    }
+                                });
+                assertThatThrownBy(() -> daemon.getMetrics(Duration.ofMillis(200)))
+                        .isInstanceOf(SocketTimeoutException.class);
+                timedOut.complete(null);
+                assertThat(daemon.getMetrics(Duration.ofSeconds(10)).getCountersMap())
+                        .containsEntry("request", 2L);
+                fakeLauncher.get(10, TimeUnit.SECONDS);
+            } finally {
+                socket.close();
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+}
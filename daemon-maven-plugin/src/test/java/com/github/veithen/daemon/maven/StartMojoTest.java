@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.jupiter.api.Test;
+
+public class StartMojoTest {
+    private static Port createPort(String name, String propertyName) {
+        Port port = new Port();
+        port.setName(name);
+        port.setPropertyName(propertyName);
+        return port;
+    }
+
+    private static DaemonDefinition createDefinition(Port... ports) {
+        DaemonDefinition definition = new DaemonDefinition();
+        definition.setPorts(ports);
+        return definition;
+    }
+
+    @Test
+    public void testPortPropertiesWithReplicas() throws Exception {
+        List<DaemonDefinition> definitions =
+                List.of(
+                        createDefinition(
+                                createPort("http", "jetty.httpPort"),
+                                createPort("https", "jetty.httpsPort")),
+                        createDefinition(createPort("http", "proxy.httpPort")));
+        // The replicas of the i-th definition are stored at indexes i * replicas and above.
+        List<Map<String, Integer>> ports =
+                List.of(
+                        Map.of("http", 8001, "https", 8443),
+                        Map.of("http", 8002, "https", 8444),
+                        Map.of("http", 9001),
+                        Map.of("http", 9002));
+        assertThat(StartMojo.getPortProperties(definitions, 2, ports, false))
+                .containsOnly(
+                        Map.entry("jetty.httpPort", "8001"),
+                        Map.entry("jetty.httpPort.1", "8001"),
+                        Map.entry("jetty.httpPort.2", "8002"),
+                        Map.entry("jetty.httpPort.list", "8001,8002"),
+                        Map.entry("jetty.httpsPort", "8443"),
+                        Map.entry("jetty.httpsPort.1", "8443"),
+                        Map.entry("jetty.httpsPort.2", "8444"),
+                        Map.entry("jetty.httpsPort.list", "8443,8444"),
+                        Map.entry("proxy.httpPort", "9001"),
+                        Map.entry("proxy.httpPort.1", "9001"),
+                        Map.entry("proxy.httpPort.2", "9002"),
+                        Map.entry("proxy.httpPort.list", "9001,9002"));
+    }
+
+    @Test
+    public void testPortPropertiesUnknownPort() {
+        List<DaemonDefinition> definitions =
+                List.of(createDefinition(createPort("http", "jetty.httpPort")));
+        assertThatThrownBy(
+                        () ->
+                                StartMojo.getPortProperties(
+                                        definitions,
+                                        2,
+                                        List.of(Map.of("http", 8001), Map.of()),
+                                        false))
+                .isInstanceOf(MojoFailureException.class)
+                .hasMessage("Unknown port http");
+    }
+
+    @Test
+    public void testPortPropertiesForeground() throws Exception {
+        Port port = createPort("http", "jetty.httpPort");
+        port.setForeground(8080);
+        List<DaemonDefinition> definitions = List.of(createDefinition(port));
+        assertThat(StartMojo.getPortProperties(definitions, 1, List.of(Map.of("http", 8080)), true))
+                .containsEntry("jetty.httpPort", "8080");
+        assertThatThrownBy(
+                        () ->
+                                StartMojo.getPortProperties(
+                                        definitions, 1, List.of(Map.of("http", 8081)), true))
+                .isInstanceOf(MojoFailureException.class);
+    }
+
+    @Test
+    public void testAllocatePortsForReplicas() throws Exception {
+        Port[] ports = {
+            createPort("http", "jetty.httpPort"), createPort("https", "jetty.httpsPort")
+        };
+        Set<Integer> allocatedPorts = new HashSet<>();
+        for (int replica = 0; replica < 8; replica++) {
+            Map<String, Integer> replicaPorts = StartMojo.allocatePorts(ports, allocatedPorts);
+            assertThat(replicaPorts).containsOnlyKeys("http", "https");
+        }
+        // No port number is handed out twice.
+        assertThat(allocatedPorts).hasSize(16);
+    }
+
+    @Test
+    public void testCountCpus() {
+        assertThat(StartMojo.countCpus("3")).isEqualTo(1);
+        assertThat(StartMojo.countCpus("0-3")).isEqualTo(4);
+        assertThat(StartMojo.countCpus("0-3,8, 10-11")).isEqualTo(7);
+        // Overlapping ranges don't count a CPU twice.
+        assertThat(StartMojo.countCpus("0-3,2-5")).isEqualTo(6);
+    }
+
+    @Test
+    public void testCountCpusInvalid() {
+        for (String cpuSet : new String[] {"", "a", "3-1", "-1", "0-3,x"}) {
+            assertThatThrownBy(() -> StartMojo.countCpus(cpuSet))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+
+public class StatusRegistryTest {
+    @Test
+    public void testRegisterAndList(@TempDir Path tempDir) throws Exception {
+        StatusRegistry registry = new StatusRegistry(tempDir.toFile());
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try (FakeMonitor monitor =
+                new FakeMonitor(MetricsResponse.newBuilder().putGauges("jvm.threads", 7).build())) {
+            registry.register(
+                    process.toHandle(), "test", "project", monitor.getPort(), Map.of("http", 8080));
+            List<StatusRegistry.Entry> entries = registry.list();
+            assertThat(entries).hasSize(1);
+            StatusRegistry.Entry entry = entries.get(0);
+            assertThat(entry.getPid()).isEqualTo(process.pid());
+            assertThat(entry.getName()).isEqualTo("test");
+            assertThat(entry.getProject()).isEqualTo("project");
+            assertThat(entry.getPorts()).containsExactly(Map.entry("http", 8080));
+            assertThat(entry.getMetrics().getGaugesMap()).containsEntry("jvm.threads", 7d);
+        } finally {
+            process.destroyForcibly();
+        }
+        process.waitFor();
+        // The entry is removed either by the exit handler or by the reader.
+        assertThat(registry.list()).isEmpty();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+}
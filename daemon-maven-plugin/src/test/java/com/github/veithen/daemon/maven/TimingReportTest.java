@@ -0,0 +1,105 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TimingReportTest {
+    private final List<String> messages = new ArrayList<>();
+
+    private final SystemStreamLog log =
+            new SystemStreamLog() {
+                @Override
+                public void info(CharSequence content) {
+                    messages.add(content.toString());
+                }
+            };
+
+    @TempDir Path directory;
+
+    private static DaemonSpec createSpec(String artifactId) {
+        DaemonArtifact artifact = new DaemonArtifact();
+        artifact.setArtifactId(artifactId);
+        DaemonSpec spec = new DaemonSpec();
+        spec.setDaemonArtifact(artifact);
+        return spec;
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        DaemonSpec spec = createSpec("jetty-daemon");
+        spec.getTiming().record("spawn", 1_500_000);
+        spec.getTiming().record("init", 2_000_000);
+        spec.getTiming().record("total", 4_250_000);
+        new TimingReport(directory.toFile(), "start", 1, List.of(spec)).write(log);
+        assertThat(messages)
+                .containsExactly(
+                        "Startup of jetty-daemon took 4.250 ms (spawn: 1.500 ms, init: 2.000 ms)");
+        String json = Files.readString(directory.resolve("start.json"));
+        assertThat(json)
+                .startsWith("{\n  \"execution\": \"start\",\n  \"timestamp\": \"")
+                .endsWith(
+                        "\",\n  \"daemons\": [\n"
+                                + "    {\"name\": \"jetty-daemon\", \"replica\": 1,"
+                                + " \"completed\": true, \"phases\": {\"spawn\": 1.500,"
+                                + " \"init\": 2.000, \"total\": 4.250}}\n"
+                                + "  ]\n}\n");
+    }
+
+    @Test
+    public void testWriteReplicas() throws Exception {
+        List<DaemonSpec> specs = new ArrayList<>();
+        for (String artifactId : new String[] {"jetty-daemon", "jetty-daemon", "other", "other"}) {
+            specs.add(createSpec(artifactId));
+        }
+        specs.get(0).getTiming().record("spawn", 1_000_000);
+        specs.get(0).getTiming().record("total", 3_000_000);
+        // The startup of this replica didn't complete.
+        specs.get(1).getTiming().record("spawn", 2_000_000);
+        specs.get(3).getTiming().record("total", 500_000);
+        new TimingReport(directory.resolve("reports").toFile(), "start", 2, specs).write(log);
+        assertThat(messages)
+                .containsExactly(
+                        "Startup of jetty-daemon #1 took 3.000 ms (spawn: 1.000 ms)",
+                        "Startup of other #2 took 0.500 ms");
+        assertThat(Files.readString(directory.resolve("reports/start.json")))
+                .contains(
+                        "\"daemons\": [\n"
+                                + "    {\"name\": \"jetty-daemon\", \"replica\": 1,"
+                                + " \"completed\": true, \"phases\": {\"spawn\": 1.000,"
+                                + " \"total\": 3.000}},\n"
+                                + "    {\"name\": \"jetty-daemon\", \"replica\": 2,"
+                                + " \"completed\": false, \"phases\": {\"spawn\": 2.000}},\n"
+                                + "    {\"name\": \"other\", \"replica\": 1,"
+                                + " \"completed\": false, \"phases\": {}},\n"
+                                + "    {\"name\": \"other\", \"replica\": 2,"
+                                + " \"completed\": true, \"phases\": {\"total\": 0.500}}\n"
+                                + "  ]\n");
+    }
+}
@@ -0,0 +1,118 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.github.veithen.daemon.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.veithen.daemon.launcher.proto.MetricsResponse;
+
+public class TopMojoTest {
+    private static void setField(Object object, String name, Object value) throws Exception {
+        for (Class<?> clazz = object.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            try {
+                Field field = clazz.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(object, value);
+                return;
+            } catch (NoSuchFieldException ex) {
+                // Continue with the superclass
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+    private static List<String> captureLog(AbstractMojo mojo) {
+        List<String> lines = new ArrayList<>();
+        mojo.setLog(
+                new SystemStreamLog() {
+                    @Override
+                    public void info(CharSequence content) {
+                        lines.add(content.toString());
+                    }
+                });
+        return lines;
+    }
+
+    @Test
+    public void testTop(@TempDir Path tempDir) throws Exception {
+        Process process = new ProcessBuilder("sleep", "60").start();
+        try (FakeMonitor monitor =
+                new FakeMonitor(
+                        MetricsResponse.newBuilder()
+                                .putCounters("jvm.cpu.nanos", 1000000)
+                                .putGauges("jvm.rss", 2097152)
+                                .putGauges("jvm.heap.used", 524288)
+                                .putGauges("jvm.heap.committed", 1048576)
+                                .putGauges("jvm.threads", 7)
+                                .build())) {
+            new StatusRegistry(tempDir.toFile())
+                    .register(
+                            process.toHandle(),
+                            "test",
+                            "project",
+                            monitor.getPort(),
+                            Map.of("http", 8080));
+            TopMojo mojo = new TopMojo();
+            setField(mojo, "statusDirectory", tempDir.toFile());
+            setField(mojo, "interval", 0);
+            setField(mojo, "count", 2);
+            List<String> lines = captureLog(mojo);
+            mojo.execute();
+            assertThat(lines).hasSize(5);
+            assertThat(lines.get(2)).isEmpty();
+            for (int i : new int[] {0, 3}) {
+                assertThat(lines.get(i)).startsWith("PID").contains("DAEMON", "THREADS");
+                String[] columns = lines.get(i + 1).trim().split("\\s+");
+                assertThat(columns).hasSize(9);
+                assertThat(columns[0]).isEqualTo(Long.toString(process.pid()));
+                assertThat(columns[1]).isEqualTo("test");
+                assertThat(columns[2]).isEqualTo("project");
+                assertThat(columns[3]).isEqualTo("http=8080");
+                assertThat(columns[4]).matches("\\d+:\\d{2}:\\d{2}");
+                assertThat(columns[5]).matches("\\d+\\.\\d");
+                assertThat(columns[6]).isEqualTo("2.0M");
+                assertThat(columns[7]).isEqualTo("0.5M/1.0M");
+                assertThat(columns[8]).isEqualTo("7");
+            }
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    @Test
+    public void testNoDaemons(@TempDir Path tempDir) throws Exception {
+        StatusMojo mojo = new StatusMojo();
+        setField(mojo, "statusDirectory", tempDir.toFile());
+        List<String> lines = captureLog(mojo);
+        mojo.execute();
+        assertThat(lines).containsExactly("No daemons are running");
+    }
+}
@@ -0,0 +1,56 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package jetty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+public class JettyITCase {
+    @Test
+    public void testGetFile() throws Exception {
+        URL url =
+                new URL(
+                        String.format(
+                                "http://localhost:%s/somefile.txt",
+                                System.getProperty("jetty.httpPort")));
+        try (BufferedReader in =
+                new BufferedReader(new InputStreamReader(url.openStream(), "utf-8"))) {
+            assertThat(in.readLine()).isEqualTo("Test content.");
+        }
+    }
+
+    @Test
+    public void testTimingReport() throws Exception {
+        // The report is written by the await goal.
+        String report =
+                new String(
+                        Files.readAllBytes(Paths.get("target", "daemon-timing", "start-jetty.json")),
+                        StandardCharsets.UTF_8);
+        assertThat(report).contains("\"completed\": true");
+    }
+}
@@ -0,0 +1,54 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package jetty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks that the persistent daemon stops once nobody has attached to it for the idle timeout. */
+public class IdleShutdownITCase {
+    @Test
+    public void testIdleShutdown() throws Exception {
+        File registryFile = PersistentITCase.getRegistryFile();
+        int port =
+                Integer.parseInt(
+                        PersistentITCase.load(PersistentITCase.FIRST_BUILD_FILE)
+                                .getProperty("port"));
+        long deadline = System.currentTimeMillis() + 120000;
+        while (registryFile.exists() || isListening(port)) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(1000);
+        }
+    }
+
+    private static boolean isListening(int port) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            return true;
+        } catch (ConnectException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package jetty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+public class PersistentITCase {
+    /** Records the process ID and port of the daemon started by the first build. */
+    static final File FIRST_BUILD_FILE = new File("target/first-build.properties");
+
+    static File getRegistryFile() {
+        File[] files =
+                new File("target/work/.daemons").listFiles((d, n) -> n.endsWith(".properties"));
+        assertThat(files).hasSize(1);
+        return files[0];
+    }
+
+    static Properties load(File file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    @Test
+    public void testGetFile() throws Exception {
+        URL url =
+                new URL(
+                        String.format(
+                                "http://localhost:%s/somefile.txt",
+                                System.getProperty("jetty.httpPort")));
+        try (BufferedReader in =
+                new BufferedReader(new InputStreamReader(url.openStream(), "utf-8"))) {
+            assertThat(in.readLine()).isEqualTo("Test content.");
+        }
+    }
+
+    @Test
+    public void testAttached() throws Exception {
+        Properties registration = load(getRegistryFile());
+        assertThat(registration.getProperty("token")).isNotEmpty();
+        if (FIRST_BUILD_FILE.exists()) {
+            // The second build must have attached to the daemon started by the first one.
+            Properties firstBuild = load(FIRST_BUILD_FILE);
+            assertThat(registration.getProperty("pid")).isEqualTo(firstBuild.getProperty("pid"));
+            assertThat(System.getProperty("jetty.httpPort"))
+                    .isEqualTo(firstBuild.getProperty("port"));
+        } else {
+            Properties firstBuild = new Properties();
+            firstBuild.setProperty("pid", registration.getProperty("pid"));
+            firstBuild.setProperty("port", System.getProperty("jetty.httpPort"));
+            try (OutputStream out = new FileOutputStream(FIRST_BUILD_FILE)) {
+                firstBuild.store(out, null);
+            }
+        }
+    }
+}
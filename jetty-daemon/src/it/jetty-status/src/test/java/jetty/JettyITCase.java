@@ -0,0 +1,62 @@
+/*-
+ * #%L
+ * Daemon Tools
+ * %%
+ * Copyright (C) 2012 - 2025 Andreas Veithen-Knowles
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package jetty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+public class JettyITCase {
+    @Test
+    public void testGetFile() throws Exception {
+        URL url =
+                new URL(
+                        String.format(
+                                "http://localhost:%s/somefile.txt",
+                                System.getProperty("jetty.httpPort")));
+        try (BufferedReader in =
+                new BufferedReader(new InputStreamReader(url.openStream(), "utf-8"))) {
+            assertThat(in.readLine()).isEqualTo("Test content.");
+        }
+    }
+
+    @Test
+    public void testStatusRegistry() throws Exception {
+        File[] files =
+                new File("target/daemon-status")
+                        .listFiles((dir, name) -> name.endsWith(".properties"));
+        assertThat(files).hasSize(1);
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(files[0])) {
+            props.load(in);
+        }
+        assertThat(props.getProperty("name")).isEqualTo("jetty-daemon");
+        assertThat(props.getProperty("port.http")).isEqualTo(System.getProperty("jetty.httpPort"));
+        assertThat(Integer.parseInt(props.getProperty("monitorPort"))).isPositive();
+    }
+}